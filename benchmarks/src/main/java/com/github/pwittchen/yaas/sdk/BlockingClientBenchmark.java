@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import com.github.pwittchen.yaas.sdk.testing.FakeYaaS;
+import com.github.pwittchen.yaas.sdk.testing.Route;
+import io.reactivex.Flowable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the BlockingYaaS with the YaaS blocked with blockingGet() for a single request and for
+ * a batch of concurrent requests. Blocking batch runs each request on its own thread created by
+ * the VirtualThreads, so it uses virtual threads when benchmarks are run on Java 21 with the
+ * multi-release JAR of the SDK and platform threads otherwise.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BlockingClientBenchmark {
+
+  private static final String BODY = "{\"id\":\"5a3d84ef\",\"name\":\"Product\",\"price\":9.99}";
+  private static final String PATH = "products/5a3d84ef";
+
+  @Param({ "64" }) private int batchSize;
+
+  private FakeYaaS fake;
+  private YaaS yaas;
+  private BlockingYaaS blockingYaaS;
+  private ExecutorService executor;
+
+  @Setup public void setUp() throws IOException {
+    fake = new FakeYaaS.Builder()
+        .withRoute(Route.get("organization/service/v1/products")
+            .withResponse(200, BODY)
+            .withLatency(1, 0, TimeUnit.MILLISECONDS))
+        .start();
+    final Endpoint endpoint = Endpoint.of(fake.url().toString());
+    final YaaSProject project =
+        new YaaSProject(endpoint, "organization", "service", "v1", "clientId", "secret");
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(endpoint, new YaaSTransport.Builder().build(), new GsonConverter());
+    final TokenCache tokenCache = new InMemoryTokenCache();
+    yaas = new YaaS(project, authorization, tokenCache);
+    blockingYaaS = new BlockingYaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withTokenCache(tokenCache)
+        .build();
+    executor = VirtualThreads.newExecutor("yaas-benchmark-");
+  }
+
+  @TearDown public void tearDown() {
+    executor.shutdownNow();
+    fake.close();
+  }
+
+  @Benchmark public String rx() throws IOException {
+    try (Response response = yaas.get(PATH).blockingGet()) {
+      return response.body().string();
+    }
+  }
+
+  @Benchmark public String blocking() throws IOException {
+    try (Response response = blockingYaaS.get(PATH)) {
+      return response.body().string();
+    }
+  }
+
+  @Benchmark public List<String> rxBatch() {
+    return Flowable.range(0, batchSize).flatMapSingle(i -> yaas.get(PATH).map(response -> {
+      try (Response closed = response) {
+        return closed.body().string();
+      }
+    }), false, batchSize).toList().blockingGet();
+  }
+
+  @Benchmark public List<String> blockingBatch() throws InterruptedException, ExecutionException {
+    final List<Future<String>> futures = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      futures.add(executor.submit(this::blocking));
+    }
+    final List<String> bodies = new ArrayList<>(batchSize);
+    for (Future<String> future : futures) {
+      bodies.add(future.get());
+    }
+    return bodies;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import com.github.pwittchen.yaas.sdk.testing.FakeYaaS;
+import com.github.pwittchen.yaas.sdk.testing.Route;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the whole GET request performed by the YaaS object against the local stand-in of the
+ * token endpoint and the service, including the token cache, building of the request, the HTTP
+ * call over loopback and reading of the response body.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+  private static final String BODY = "{\"id\":\"5a3d84ef\",\"name\":\"Product\",\"price\":9.99}";
+
+  private FakeYaaS fake;
+  private YaaS yaas;
+
+  @Setup public void setUp() throws IOException {
+    fake = new FakeYaaS.Builder()
+        .withRoute(Route.get("organization/service/v1/products").withResponse(200, BODY))
+        .start();
+    final Endpoint endpoint = Endpoint.of(fake.url().toString());
+    final YaaSProject project =
+        new YaaSProject(endpoint, "organization", "service", "v1", "clientId", "secret");
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(endpoint, new YaaSTransport.Builder().build(), new GsonConverter());
+    yaas = new YaaS(project, authorization);
+  }
+
+  @TearDown public void tearDown() {
+    fake.close();
+  }
+
+  @Benchmark public String get() throws IOException {
+    try (Response response = yaas.get("products/5a3d84ef").blockingGet()) {
+      return response.body().string();
+    }
+  }
+
+  @Benchmark public Product getTyped() {
+    return yaas.<Product>get("products/5a3d84ef", Product.class).blockingGet();
+  }
+
+  static class Product {
+    String id;
+    String name;
+    double price;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import com.google.gson.reflect.TypeToken;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures conversion of the list of products from and to JSON with GsonConverter for the
+ * payloads of different sizes, using both String based and streaming methods.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonConverterBenchmark {
+
+  private static final Type PRODUCTS = new TypeToken<List<Product>>() {
+  }.getType();
+
+  @Param({ "1", "100", "10000" }) public int size;
+
+  private final JsonConverter converter = new GsonConverter();
+  private List<Product> products;
+  private String json;
+
+  @Setup public void setUp() {
+    products = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      products.add(new Product("product-" + i, "Product " + i, 9.99 + i, i % 2 == 0));
+    }
+    json = converter.toJson(products, PRODUCTS);
+  }
+
+  @Benchmark public String toJson() {
+    return converter.toJson(products, PRODUCTS);
+  }
+
+  @Benchmark public StringWriter toJsonStream() {
+    final StringWriter writer = new StringWriter(json.length());
+    converter.toJson(products, PRODUCTS, writer);
+    return writer;
+  }
+
+  @Benchmark public List<Product> fromJson() {
+    return converter.fromJson(json, PRODUCTS);
+  }
+
+  @Benchmark public List<Product> fromJsonStream() {
+    return converter.fromJson(new StringReader(json), PRODUCTS);
+  }
+
+  @Benchmark public List<Product> roundTrip() {
+    return converter.fromJson(converter.toJson(products, PRODUCTS), PRODUCTS);
+  }
+
+  static class Product {
+    String id;
+    String name;
+    double price;
+    boolean available;
+
+    Product(final String id, final String name, final double price, final boolean available) {
+      this.id = id;
+      this.name = name;
+      this.price = price;
+      this.available = available;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.TimeUnit;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building of the URLs and requests performed before each call. Methods prefixed with
+ * "formatted" repeat the former implementation based on String.format and parsing of the whole
+ * URL, so the difference can be compared.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBuildingBenchmark {
+
+  private static final String URL_FORMAT = "%s/%s/%s/%s";
+  private static final String PATH = "products/5a3d84ef";
+  private static final PathTemplate VARIANT = PathTemplate.compile("products/{productId}/{id}");
+
+  private YaaSProject project;
+  private YaaS yaas;
+  private YaaSAuthorization authorization;
+  private String url;
+
+  @Setup public void setUp() {
+    project = new YaaSProject(Zone.EU, "organization", "service", "v1", "clientId", "secret");
+    authorization = new YaaSAuthorization(Zone.EU);
+    yaas = new YaaS(project, authorization);
+    url = yaas.createUrl(PATH);
+  }
+
+  @Benchmark public String createUrl() {
+    return yaas.createUrl(PATH);
+  }
+
+  @Benchmark public String formattedCreateUrl() {
+    return String.format(URL_FORMAT, project.organization, project.service, project.version,
+        PATH);
+  }
+
+  @Benchmark public String expandPathTemplate() {
+    return VARIANT.expand("5a3d84ef", 42);
+  }
+
+  @Benchmark public Request createAuthorizedGetRequest() {
+    return authorization.createAuthorizedGetRequest("token", url);
+  }
+
+  @Benchmark public Request formattedCreateAuthorizedGetRequest() {
+    return new Request.Builder().url(Zone.EU.getUrl().concat(url))
+        .addHeader("Content-Type", "application/json")
+        .addHeader("Authorization", "Bearer".concat(" ").concat("token"))
+        .get()
+        .build();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk.example;
+
+import com.github.pwittchen.yaas.sdk.Client;
+import com.github.pwittchen.yaas.sdk.Endpoint;
+import com.github.pwittchen.yaas.sdk.GsonConverter;
+import com.github.pwittchen.yaas.sdk.InMemoryMetrics;
+import com.github.pwittchen.yaas.sdk.LatencyHistogram;
+import com.github.pwittchen.yaas.sdk.YaaS;
+import com.github.pwittchen.yaas.sdk.YaaSAuthorization;
+import com.github.pwittchen.yaas.sdk.YaaSProject;
+import com.github.pwittchen.yaas.sdk.YaaSTransport;
+import com.github.pwittchen.yaas.sdk.testing.FakeYaaS;
+import com.github.pwittchen.yaas.sdk.testing.Route;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Sends GET requests at the target rate to the FakeYaaS running in the same process and reports
+ * latency percentiles, errors and number of token requests, so throughput and latency of the SDK
+ * can be compared between versions without network access.
+ *
+ * Arguments: requests per second (1000), duration in seconds (10), latency of the service in
+ * milliseconds (5), rate of the errors of the service (0.01), maximal number of requests in
+ * progress (512). Requests which can't be sent, because too many requests are in progress, are
+ * reported as dropped.
+ */
+public class LoadGenerator {
+
+  private static final String PRODUCT = "{\"id\":\"5a3d84ef\",\"name\":\"Product\",\"price\":9.99}";
+  private static final int PRODUCTS = 1000;
+
+  public static void main(String args[]) throws Exception {
+    final int rate = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    final long serviceLatency = args.length > 2 ? Long.parseLong(args[2]) : 5;
+    final double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+    final int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 512;
+
+    try (FakeYaaS fake = new FakeYaaS.Builder().withTokenLatency(100, TimeUnit.MILLISECONDS)
+        .withRoute(Route.get("org/service/v1/products")
+            .withResponse(200, PRODUCT)
+            .withLatency(serviceLatency, serviceLatency, TimeUnit.MILLISECONDS)
+            .withErrorRate(errorRate))
+        .start()) {
+
+      final Endpoint endpoint = Endpoint.of(fake.url().toString());
+      final OkHttpClient okHttpClient = new YaaSTransport.Builder().build();
+      final InMemoryMetrics metrics = new InMemoryMetrics(okHttpClient);
+      final YaaSProject project =
+          new YaaSProject(endpoint, "org", "service", "v1", "clientId", "clientSecret");
+      final Client client = new YaaS.Builder().withProject(project)
+          .withAuthorization(new YaaSAuthorization(endpoint, okHttpClient, new GsonConverter()))
+          .withMetricsListener(metrics)
+          .build();
+
+      final LatencyHistogram latency = new LatencyHistogram();
+      final LongAdder errors = new LongAdder();
+      final LongAdder dropped = new LongAdder();
+      final long period = TimeUnit.SECONDS.toNanos(1) / rate;
+      final long started = System.nanoTime();
+
+      Flowable.interval(period, TimeUnit.NANOSECONDS)
+          .take((long) rate * seconds)
+          .onBackpressureDrop(tick -> dropped.increment())
+          .flatMapSingle(tick -> {
+            final long start = System.nanoTime();
+            return client.get("products/" + tick % PRODUCTS).map(response -> {
+              try (Response closed = response) {
+                return closed.code();
+              }
+            }).doOnSuccess(code -> {
+              latency.record(System.nanoTime() - start);
+              if (code >= 400) {
+                errors.increment();
+              }
+            }).onErrorResumeNext(throwable -> {
+              errors.increment();
+              return Single.just(-1);
+            });
+          }, false, maxInFlight)
+          .blockingSubscribe();
+
+      final double elapsed = (System.nanoTime() - started) / 1e9;
+      System.out.printf("target: %d req/s for %d s, achieved: %.0f req/s%n", rate, seconds,
+          latency.getCount() / elapsed);
+      System.out.printf("requests: %d, errors: %d, dropped: %d%n", latency.getCount(),
+          errors.sum(), dropped.sum());
+      System.out.printf("latency p50: %.2f ms, p99: %.2f ms, p999: %.2f ms, max: %.2f ms%n",
+          latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+          latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3);
+      System.out.printf("token calls: %d (fake), fetches: %d, cache hits: %d%n",
+          fake.getTokenCalls(), metrics.getTokenFetches(), metrics.getTokenCacheHits());
+      System.out.printf("status codes: %s, open connections: %d%n", metrics.getStatusCodes(),
+          metrics.getConnectionCount());
+    }
+    System.exit(0);
+  }
+}
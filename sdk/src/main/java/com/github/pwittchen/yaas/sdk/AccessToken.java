@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+/**
+ * Represents Access Token (AKA Bearer) together with the moment of its expiration
+ */
+public class AccessToken {
+
+  public final String value;
+  public final long expiresAt; // epoch millis
+
+  public AccessToken(final String value, final long expiresAt) {
+    this.value = value;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * Checks if token can still be used at the given moment
+   *
+   * @param now current time in epoch millis
+   * @param margin safety margin in millis, which has to be left before the expiration
+   * @return true if token won't expire within the margin
+   */
+  public boolean isValid(final long now, final long margin) {
+    return now + margin < expiresAt;
+  }
+
+  @Override public String toString() {
+    return "AccessToken{"
+        + "expiresAt=" + expiresAt
+        + '}';
+  }
+}
@@ -27,6 +27,32 @@ public interface Authorization {
 
   Single<String> getAccessToken(final String clientId, final String clientSecret);
 
+  /**
+   * Reads Access Token together with its expiration time. Default implementation doesn't know the
+   * expiration time, so returned token is treated as already expired and won't be cached.
+   *
+   * @param clientId id of the client read from YaaS Builder web app
+   * @param clientSecret secret value of the client read form YaaS Builder web app
+   * @return Single wrapping Access Token
+   */
+  default Single<AccessToken> getToken(final String clientId, final String clientSecret) {
+    return getAccessToken(clientId, clientSecret).map(token -> new AccessToken(token, 0));
+  }
+
+  /**
+   * Reads Access Token for the requested scope together with its expiration time. Default
+   * implementation ignores the scope.
+   *
+   * @param clientId id of the client read from YaaS Builder web app
+   * @param clientSecret secret value of the client read form YaaS Builder web app
+   * @param scope requested scope of the token or null for the default scope
+   * @return Single wrapping Access Token
+   */
+  default Single<AccessToken> getToken(final String clientId, final String clientSecret,
+      final String scope) {
+    return getToken(clientId, clientSecret);
+  }
+
   Single<Response> get(final String bearer, final String path);
 
   Single<Response> post(final String bearer, final String path, final RequestBody body);
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import java.util.function.Function;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * BlockingYaaS class performs authorized requests to services of the YaaS projects on the calling
+ * thread with Call.execute(), without wrapping them in the Single. It fits services running each
+ * request on its own thread, e.g. on virtual threads created by {@link VirtualThreads}.
+ *
+ * Access Tokens are kept in the TokenCache, which can be shared with the YaaS objects of the same
+ * project, so both of them use the same token. Missing token is requested by the first thread,
+ * while the others wait for it without holding any monitor. Retry, circuit breaker, rate limiting
+ * and hedging policies of the YaaS are not applied to the blocking requests.
+ *
+ * OkHttp waits for the response headers of HTTP/2 streams in the synchronized method, which pins
+ * the virtual thread to its carrier thread for the whole call. BlockingYaaS created without
+ * explicitly provided authorization uses {@link YaaSTransport#sharedHttp1()}, which speaks only
+ * HTTP/1.1. Provided authorization should use the client with HTTP/2 disabled, e.g. built with
+ * {@link YaaSTransport.Builder#withHttp2(boolean)}, when requests run on virtual threads.
+ */
+public class BlockingYaaS implements BlockingClient {
+
+  private final static char PATH_SEPARATOR = '/';
+  private final static int HTTP_UNAUTHORIZED = 401;
+  private final YaaSAuthorization authorization;
+  private final YaaSProject project;
+  private final TokenCache tokenCache;
+  private final TokenKey tokenKey;
+  private final Single<AccessToken> tokenLoader;
+  private final JsonConverter jsonConverter;
+  private final String basePath;
+
+  /**
+   * Creates an instance of the BlockingYaaS object with provided project details
+   *
+   * @param project represents YaaS Project
+   */
+  public BlockingYaaS(final YaaSProject project) {
+    this(new Builder().withProject(project).withDefaults());
+  }
+
+  /**
+   * Creates an instance of the BlockingYaaS object with provided project and authorization details
+   *
+   * @param project represents YaaS Project
+   * @param authorization represents YaaS authorization
+   */
+  public BlockingYaaS(final YaaSProject project, final YaaSAuthorization authorization) {
+    this(new Builder().withProject(project).withAuthorization(authorization).withDefaults());
+  }
+
+  private BlockingYaaS(final Builder builder) {
+    Objects.requireNonNull(builder.project, "project == null");
+    Objects.requireNonNull(builder.authorization, "authorization == null");
+    Objects.requireNonNull(builder.tokenCache, "tokenCache == null");
+    Objects.requireNonNull(builder.jsonConverter, "jsonConverter == null");
+    this.project = builder.project;
+    this.authorization = builder.authorization;
+    this.tokenCache = builder.tokenCache;
+    this.tokenKey = TokenKey.of(project);
+    this.tokenLoader = Single.fromCallable(
+        () -> authorization.fetchToken(project.clientId, project.clientSecret, project.scope));
+    this.jsonConverter = builder.jsonConverter;
+    this.basePath = new StringBuilder().append(project.organization).append(PATH_SEPARATOR)
+        .append(project.service).append(PATH_SEPARATOR)
+        .append(project.version).append(PATH_SEPARATOR)
+        .toString();
+  }
+
+  /**
+   * Performs an authorized GET request to the endpoint of the defined project
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @return response object from OkHttp library, which has to be closed
+   * @throws IOException when the request couldn't be performed
+   */
+  @Override public Response get(final String path) throws IOException {
+    final String url = createUrl(path);
+    return authorized(null,
+        accessToken -> authorization.createAuthorizedGetRequest(accessToken, url));
+  }
+
+  /**
+   * Performs an authorized POST request to the endpoint of the defined project
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the request
+   * @return response object from OkHttp library, which has to be closed
+   * @throws IOException when the request couldn't be performed
+   */
+  @Override public Response post(final String path, final RequestBody body) throws IOException {
+    final String url = createUrl(path);
+    return authorized(body,
+        accessToken -> authorization.createAuthorizedPostRequest(accessToken, url, body));
+  }
+
+  /**
+   * Performs an authorized PUT request to the endpoint of the defined project
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the request
+   * @return response object from OkHttp library, which has to be closed
+   * @throws IOException when the request couldn't be performed
+   */
+  @Override public Response put(final String path, final RequestBody body) throws IOException {
+    final String url = createUrl(path);
+    return authorized(body,
+        accessToken -> authorization.createAuthorizedPutRequest(accessToken, url, body));
+  }
+
+  /**
+   * Performs an authorized DELETE request with body to the endpoint of the defined project
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the request
+   * @return response object from OkHttp library, which has to be closed
+   * @throws IOException when the request couldn't be performed
+   */
+  @Override public Response delete(final String path, final RequestBody body) throws IOException {
+    final String url = createUrl(path);
+    return authorized(body,
+        accessToken -> authorization.createAuthorizedDeleteRequest(accessToken, url, body));
+  }
+
+  /**
+   * Performs an authorized DELETE request to the endpoint of the defined project
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @return response object from OkHttp library, which has to be closed
+   * @throws IOException when the request couldn't be performed
+   */
+  @Override public Response delete(final String path) throws IOException {
+    final String url = createUrl(path);
+    return authorized(null,
+        accessToken -> authorization.createAuthorizedDeleteRequest(accessToken, url));
+  }
+
+  /**
+   * Performs an authorized GET request and converts the response body to the given type
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param typeOfT type of the response body
+   * @param <T> type of the returned object
+   * @return converted response body
+   * @throws IOException when the request couldn't be performed
+   * @throws YaaSException when the response is not successful or its body is empty
+   */
+  @Override public <T> T get(final String path, final Type typeOfT) throws IOException {
+    return decode(get(path), typeOfT);
+  }
+
+  /**
+   * Performs an authorized POST request and converts the response body to the given type
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the request
+   * @param typeOfT type of the response body
+   * @param <T> type of the returned object
+   * @return converted response body
+   * @throws IOException when the request couldn't be performed
+   * @throws YaaSException when the response is not successful or its body is empty
+   */
+  @Override public <T> T post(final String path, final RequestBody body, final Type typeOfT)
+      throws IOException {
+    return decode(post(path, body), typeOfT);
+  }
+
+  /**
+   * Performs an authorized PUT request and converts the response body to the given type
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the request
+   * @param typeOfT type of the response body
+   * @param <T> type of the returned object
+   * @return converted response body
+   * @throws IOException when the request couldn't be performed
+   * @throws YaaSException when the response is not successful or its body is empty
+   */
+  @Override public <T> T put(final String path, final RequestBody body, final Type typeOfT)
+      throws IOException {
+    return decode(put(path, body), typeOfT);
+  }
+
+  /**
+   * Performs request with the cached Access Token. When YaaS proxy rejects the token with 401
+   * status, the token is invalidated and request is replayed once with a new token, if its body
+   * can be sent again.
+   */
+  private Response authorized(final RequestBody body, final Function<String, Request> request)
+      throws IOException {
+    final String accessToken = getAccessToken();
+    final Response response = authorization.execute(request.apply(accessToken));
+    if (response.code() != HTTP_UNAUTHORIZED || !YaaS.isReplayable(body)) {
+      return response;
+    }
+    YaaS.close(response);
+    tokenCache.invalidate(tokenKey, accessToken);
+    return authorization.execute(request.apply(getAccessToken()));
+  }
+
+  /**
+   * Reads valid token directly from the cache. Otherwise, the token is loaded on the calling thread
+   * or, when another thread already loads it, the calling thread waits for its result.
+   */
+  private String getAccessToken() throws IOException {
+    final AccessToken cached = tokenCache.getIfPresent(tokenKey);
+    if (cached != null) {
+      return cached.value;
+    }
+    try {
+      return tokenCache.get(tokenKey, tokenLoader).blockingGet().value;
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private <T> T decode(final Response response, final Type typeOfT) throws IOException {
+    return YaaS.convert(response, typeOfT, jsonConverter);
+  }
+
+  String createUrl(final String path) {
+    return basePath.concat(path);
+  }
+
+  public static class Builder {
+    private YaaSProject project;
+    private YaaSAuthorization authorization;
+    private TokenCache tokenCache;
+    private JsonConverter jsonConverter;
+
+    public Builder withProject(final YaaSProject project) {
+      Objects.requireNonNull(project, "project == null");
+      this.project = project;
+      return this;
+    }
+
+    /**
+     * Sets authorization used to retrieve tokens and perform requests, YaaSAuthorization for the
+     * endpoint of the project by default
+     */
+    public Builder withAuthorization(final YaaSAuthorization authorization) {
+      Objects.requireNonNull(authorization, "authorization == null");
+      this.authorization = authorization;
+      return this;
+    }
+
+    /**
+     * Sets cache of the Access Tokens, which can be shared with the YaaS objects. New
+     * InMemoryTokenCache is created by default.
+     */
+    public Builder withTokenCache(final TokenCache tokenCache) {
+      Objects.requireNonNull(tokenCache, "tokenCache == null");
+      this.tokenCache = tokenCache;
+      return this;
+    }
+
+    /**
+     * Sets converter of the response bodies used by typed requests. Converter of the
+     * YaaSAuthorization is used by default.
+     */
+    public Builder withJsonConverter(final JsonConverter jsonConverter) {
+      Objects.requireNonNull(jsonConverter, "jsonConverter == null");
+      this.jsonConverter = jsonConverter;
+      return this;
+    }
+
+    public BlockingYaaS build() {
+      return new BlockingYaaS(withDefaults());
+    }
+
+    private Builder withDefaults() {
+      Objects.requireNonNull(project, "project == null");
+      if (authorization == null) {
+        authorization = new YaaSAuthorization(project.endpoint, YaaSTransport.sharedHttp1(),
+            new GsonConverter());
+      }
+      if (tokenCache == null) {
+        tokenCache = new InMemoryTokenCache();
+      }
+      if (jsonConverter == null) {
+        jsonConverter = authorization.getJsonConverter();
+      }
+      return this;
+    }
+  }
+}
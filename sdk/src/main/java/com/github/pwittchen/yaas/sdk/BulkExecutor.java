@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.Response;
+
+/**
+ * Executes large number of requests through the {@link com.github.pwittchen.yaas.sdk.Client} with
+ * bounded concurrency. Concurrent requests of the YaaS client share one Access Token, so the
+ * token endpoint is called once for the whole batch. Note that the OkHttp dispatcher limits
+ * number of concurrent requests per host on its own, so it should allow at least maxConcurrency
+ * requests.
+ */
+public class BulkExecutor {
+
+  private static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+  private final Client client;
+  private final int maxConcurrency;
+  private final boolean ordered;
+  private final LongAdder succeeded = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final AtomicReference<Batch> lastBatch = new AtomicReference<>();
+
+  /**
+   * Creates executor performing up to 16 requests at the same time and emitting results in the
+   * order of their completion
+   *
+   * @param client used to perform requests
+   */
+  public BulkExecutor(final Client client) {
+    this(client, DEFAULT_MAX_CONCURRENCY, false);
+  }
+
+  /**
+   * Creates executor
+   *
+   * @param client used to perform requests
+   * @param maxConcurrency maximal number of requests performed at the same time
+   * @param ordered if true, results are emitted in the order of the requests, otherwise in the
+   * order of their completion
+   */
+  public BulkExecutor(final Client client, final int maxConcurrency, final boolean ordered) {
+    Objects.requireNonNull(client, "client == null");
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency <= 0");
+    }
+    this.client = client;
+    this.maxConcurrency = maxConcurrency;
+    this.ordered = ordered;
+  }
+
+  /**
+   * Executes requests. Requests are pulled from the upstream only when there's a free slot, so
+   * it can be a lazy stream of any size. Failure of the single request doesn't stop the others,
+   * it's reported as a result.
+   *
+   * @param requests to be executed
+   * @return Flowable emitting result of each request
+   */
+  public Flowable<BulkResult> execute(final Flowable<BulkRequest> requests) {
+    Objects.requireNonNull(requests, "requests == null");
+    return Flowable.defer(() -> {
+      final Batch batch = new Batch();
+      lastBatch.set(batch);
+      final Flowable<BulkResult> results = ordered
+          ? requests.concatMapEager(request -> execute(request).toFlowable(), maxConcurrency, 1)
+          : requests.flatMap(request -> execute(request).toFlowable(), false, maxConcurrency);
+      return results.doOnNext(result -> batch.finished.increment())
+          .doOnTerminate(batch::end)
+          .doOnCancel(batch::end);
+    });
+  }
+
+  private Single<BulkResult> execute(final BulkRequest request) {
+    return call(request).map(response -> {
+      final int code = response.code();
+      if (response.body() != null) {
+        response.close();
+      }
+      return new BulkResult(request, code, null);
+    }).onErrorReturn(error -> new BulkResult(request, 0, error)).doOnSuccess(result -> {
+      if (result.isSuccessful()) {
+        succeeded.increment();
+      } else {
+        failed.increment();
+      }
+    });
+  }
+
+  private Single<Response> call(final BulkRequest request) {
+    switch (request.method) {
+      case GET:
+        return client.get(request.path);
+      case POST:
+        return client.post(request.path, request.body);
+      case PUT:
+        return client.put(request.path, request.body);
+      case DELETE:
+        return request.body == null
+            ? client.delete(request.path) : client.delete(request.path, request.body);
+      default:
+        return Single.error(new YaaSException("Unsupported method " + request.method));
+    }
+  }
+
+  /**
+   * @return number of requests finished with successful response
+   */
+  public long getSucceeded() {
+    return succeeded.sum();
+  }
+
+  /**
+   * @return number of requests finished with unsuccessful response or error
+   */
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  /**
+   * @return number of finished requests per second of the current or the last finished execution
+   */
+  public double getThroughput() {
+    final Batch batch = lastBatch.get();
+    return batch == null ? 0 : batch.getThroughput();
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+  /**
+   * Single execution of the requests, which is measured from its subscription until it's finished
+   * or cancelled, so idle time between the executions doesn't lower the throughput
+   */
+  private static class Batch {
+    private final long startedAt = System.nanoTime();
+    private final LongAdder finished = new LongAdder();
+    private volatile long endedAt;
+
+    private void end() {
+      endedAt = System.nanoTime();
+    }
+
+    private double getThroughput() {
+      final long ended = endedAt;
+      final long elapsed = (ended == 0 ? System.nanoTime() : ended) - startedAt;
+      final double seconds = Math.max(elapsed, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+      return finished.sum() / seconds;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+import okhttp3.RequestBody;
+
+/**
+ * Describes single request executed by the {@link com.github.pwittchen.yaas.sdk.BulkExecutor}
+ */
+public class BulkRequest {
+
+  public enum Method {
+    GET, POST, PUT, DELETE
+  }
+
+  public final Method method;
+  public final String path;
+  public final RequestBody body; // null for GET and DELETE without the body
+
+  public BulkRequest(final Method method, final String path, final RequestBody body) {
+    Objects.requireNonNull(method, "method == null");
+    Objects.requireNonNull(path, "path == null");
+    this.method = method;
+    this.path = path;
+    this.body = body;
+  }
+
+  public static BulkRequest get(final String path) {
+    return new BulkRequest(Method.GET, path, null);
+  }
+
+  public static BulkRequest post(final String path, final RequestBody body) {
+    return new BulkRequest(Method.POST, path, body);
+  }
+
+  public static BulkRequest put(final String path, final RequestBody body) {
+    return new BulkRequest(Method.PUT, path, body);
+  }
+
+  public static BulkRequest delete(final String path) {
+    return new BulkRequest(Method.DELETE, path, null);
+  }
+
+  public static BulkRequest delete(final String path, final RequestBody body) {
+    return new BulkRequest(Method.DELETE, path, body);
+  }
+
+  @Override public String toString() {
+    return "BulkRequest{"
+        + "method=" + method
+        + ", path='" + path + '\''
+        + '}';
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+/**
+ * Represents result of the single request executed by the
+ * {@link com.github.pwittchen.yaas.sdk.BulkExecutor}. Body of the response is not kept, so
+ * connections are released as soon as possible.
+ */
+public class BulkResult {
+
+  public final BulkRequest request;
+  public final int code; // 0 when request failed without the response
+  public final Throwable error; // null when response was received
+
+  public BulkResult(final BulkRequest request, final int code, final Throwable error) {
+    this.request = request;
+    this.code = code;
+    this.error = error;
+  }
+
+  public boolean isSuccessful() {
+    return error == null && code >= 200 && code < 300;
+  }
+
+  @Override public String toString() {
+    return "BulkResult{"
+        + "request=" + request
+        + ", code=" + code
+        + ", error=" + error
+        + '}';
+  }
+}
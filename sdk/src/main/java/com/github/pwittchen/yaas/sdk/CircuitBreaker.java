@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.Response;
+
+/**
+ * Stops sending requests to the service, which keeps failing, so they don't wait for timeouts and
+ * don't take connections and threads needed by the other services. Circuit breaker can be shared
+ * between many YaaS objects and keeps separate state for each service identified by
+ * {@link ServiceKey}.
+ *
+ * Circuit of the service is closed as long as the rate of the failures among the recent calls
+ * stays below the threshold. Calls failed with an exception, responses with 5xx status and,
+ * optionally, calls slower than the given duration are treated as failures. When the threshold is
+ * exceeded, circuit is opened and requests fail immediately with
+ * {@link RequestRejectedException}. After the open duration, circuit becomes half-open and lets a
+ * few probe calls through. When all of them succeed, circuit is closed again, otherwise it's
+ * opened for the next period.
+ */
+public class CircuitBreaker {
+
+  private static final int DEFAULT_WINDOW_SIZE = 100;
+  private static final int DEFAULT_MINIMUM_CALLS = 20;
+  private static final double DEFAULT_FAILURE_RATE = 0.5;
+  private static final long DEFAULT_OPEN_DURATION_SECONDS = 30;
+  private static final int DEFAULT_HALF_OPEN_CALLS = 3;
+  private static final int HTTP_SERVER_ERROR = 500;
+
+  /**
+   * State of the circuit of the single service
+   */
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final ConcurrentMap<ServiceKey, Circuit> circuits = new ConcurrentHashMap<>();
+  private final int windowSize;
+  private final int minimumCalls;
+  private final double failureRate;
+  private final long openDuration;
+  private final int halfOpenCalls;
+  private final long slowCallDuration;
+
+  /**
+   * Creates circuit breaker with default configuration, which opens the circuit when at least
+   * half of the last 100 calls failed and probes the service after 30 seconds
+   */
+  public CircuitBreaker() {
+    this(new Builder());
+  }
+
+  private CircuitBreaker(final Builder builder) {
+    if (builder.minimumCalls > builder.windowSize) {
+      throw new IllegalArgumentException("minimumCalls > windowSize");
+    }
+    this.windowSize = builder.windowSize;
+    this.minimumCalls = builder.minimumCalls;
+    this.failureRate = builder.failureRate;
+    this.openDuration = builder.openDuration;
+    this.halfOpenCalls = builder.halfOpenCalls;
+    this.slowCallDuration = builder.slowCallDuration;
+  }
+
+  /**
+   * @return current state of the circuit of the service, CLOSED if it was never called
+   */
+  public State getState(final ServiceKey key) {
+    final Circuit circuit = circuits.get(key);
+    return circuit == null ? State.CLOSED : circuit.getState(System.nanoTime());
+  }
+
+  /**
+   * Closes circuits of all the services and forgets their recent calls
+   */
+  public void reset() {
+    circuits.clear();
+  }
+
+  Single<Response> execute(final ServiceKey key, final Single<Response> call) {
+    return Single.defer(() -> {
+      final Circuit circuit = circuits.computeIfAbsent(key, ignored -> new Circuit());
+      final long generation = circuit.tryAcquire(System.nanoTime());
+      if (generation < 0) {
+        return Single.error(createRejection(key));
+      }
+      final long start = System.nanoTime();
+      final AtomicBoolean finished = new AtomicBoolean();
+      return call.doOnSuccess(response -> {
+        if (finished.compareAndSet(false, true)) {
+          final long duration = System.nanoTime() - start;
+          circuit.onResult(generation, response.code() >= HTTP_SERVER_ERROR || isSlow(duration));
+        }
+      }).doOnError(throwable -> {
+        if (!finished.compareAndSet(false, true)) {
+          return;
+        }
+        if (throwable instanceof RequestRejectedException) {
+          circuit.onCancel(generation);
+        } else {
+          circuit.onResult(generation, true);
+        }
+      }).doOnDispose(() -> {
+        if (finished.compareAndSet(false, true)) {
+          circuit.onCancel(generation);
+        }
+      });
+    });
+  }
+
+  /**
+   * Rejects the call without subscribing it when the circuit of the service doesn't let any more
+   * calls through. It's checked before the rate limiter, so rejected calls don't take its permits,
+   * while the call itself still goes through {@link #execute(ServiceKey, Single)}.
+   */
+  Single<Response> rejectIfOpen(final ServiceKey key, final Single<Response> call) {
+    return Single.defer(() -> {
+      final Circuit circuit = circuits.get(key);
+      if (circuit != null && circuit.isRejecting(System.nanoTime())) {
+        return Single.error(createRejection(key));
+      }
+      return call;
+    });
+  }
+
+  private static RequestRejectedException createRejection(final ServiceKey key) {
+    return new RequestRejectedException("Circuit breaker of " + key + " is open");
+  }
+
+  private boolean isSlow(final long duration) {
+    return slowCallDuration > 0 && duration > slowCallDuration;
+  }
+
+  /**
+   * State of the single service. Each state transition starts a new generation, so results of the
+   * calls started in the previous state are ignored.
+   */
+  private class Circuit {
+    private final boolean[] failures = new boolean[windowSize];
+    private State state = State.CLOSED;
+    private long generation;
+    private int calls;
+    private int failedCalls;
+    private int position;
+    private long openedAt;
+    private int probes;
+    private int succeededProbes;
+
+    private synchronized State getState(final long now) {
+      if (state == State.OPEN && now - openedAt >= openDuration) {
+        return State.HALF_OPEN;
+      }
+      return state;
+    }
+
+    private synchronized boolean isRejecting(final long now) {
+      if (state == State.OPEN) {
+        return now - openedAt < openDuration;
+      }
+      return state == State.HALF_OPEN && probes >= halfOpenCalls;
+    }
+
+    private synchronized long tryAcquire(final long now) {
+      if (state == State.OPEN) {
+        if (now - openedAt < openDuration) {
+          return -1;
+        }
+        transition(State.HALF_OPEN);
+      }
+      if (state == State.HALF_OPEN) {
+        if (probes >= halfOpenCalls) {
+          return -1;
+        }
+        probes++;
+      }
+      return generation;
+    }
+
+    private synchronized void onResult(final long callGeneration, final boolean failed) {
+      if (callGeneration != generation) {
+        return;
+      }
+      if (state == State.HALF_OPEN) {
+        if (failed) {
+          open();
+        } else if (++succeededProbes >= halfOpenCalls) {
+          transition(State.CLOSED);
+        }
+        return;
+      }
+      if (calls == windowSize) {
+        failedCalls -= failures[position] ? 1 : 0;
+      } else {
+        calls++;
+      }
+      failures[position] = failed;
+      failedCalls += failed ? 1 : 0;
+      position = (position + 1) % windowSize;
+      if (calls >= minimumCalls && failedCalls >= failureRate * calls) {
+        open();
+      }
+    }
+
+    private synchronized void onCancel(final long callGeneration) {
+      if (callGeneration == generation && state == State.HALF_OPEN) {
+        probes--;
+      }
+    }
+
+    private void open() {
+      transition(State.OPEN);
+      openedAt = System.nanoTime();
+    }
+
+    private void transition(final State newState) {
+      state = newState;
+      generation++;
+      calls = 0;
+      failedCalls = 0;
+      position = 0;
+      probes = 0;
+      succeededProbes = 0;
+    }
+  }
+
+  public static class Builder {
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private double failureRate = DEFAULT_FAILURE_RATE;
+    private long openDuration = TimeUnit.SECONDS.toNanos(DEFAULT_OPEN_DURATION_SECONDS);
+    private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+    private long slowCallDuration;
+
+    /**
+     * Sets number of the recent calls used to compute the failure rate (100 by default) and the
+     * minimal number of calls needed to open the circuit (20 by default)
+     */
+    public Builder withWindow(final int windowSize, final int minimumCalls) {
+      if (windowSize <= 0 || minimumCalls <= 0) {
+        throw new IllegalArgumentException("windowSize <= 0 || minimumCalls <= 0");
+      }
+      this.windowSize = windowSize;
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /**
+     * Sets rate of the failed calls, which opens the circuit (0.5 by default)
+     */
+    public Builder withFailureRate(final double failureRate) {
+      if (failureRate <= 0 || failureRate > 1) {
+        throw new IllegalArgumentException("failureRate <= 0 || failureRate > 1");
+      }
+      this.failureRate = failureRate;
+      return this;
+    }
+
+    /**
+     * Sets time for which requests are rejected after opening the circuit (30 seconds by default)
+     */
+    public Builder withOpenDuration(final long openDuration, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (openDuration <= 0) {
+        throw new IllegalArgumentException("openDuration <= 0");
+      }
+      this.openDuration = unit.toNanos(openDuration);
+      return this;
+    }
+
+    /**
+     * Sets number of the probe calls in half-open state, which have to succeed to close the
+     * circuit (3 by default)
+     */
+    public Builder withHalfOpenCalls(final int halfOpenCalls) {
+      if (halfOpenCalls <= 0) {
+        throw new IllegalArgumentException("halfOpenCalls <= 0");
+      }
+      this.halfOpenCalls = halfOpenCalls;
+      return this;
+    }
+
+    /**
+     * Treats calls slower than the given duration as failures (disabled by default)
+     */
+    public Builder withSlowCallDuration(final long slowCallDuration, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (slowCallDuration <= 0) {
+        throw new IllegalArgumentException("slowCallDuration <= 0");
+      }
+      this.slowCallDuration = unit.toNanos(slowCallDuration);
+      return this;
+    }
+
+    public CircuitBreaker build() {
+      return new CircuitBreaker(this);
+    }
+  }
+}
@@ -16,6 +16,8 @@
 package com.github.pwittchen.yaas.sdk;
 
 import io.reactivex.Single;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
@@ -34,4 +36,49 @@ public interface Client {
   Single<Response> delete(final String path, final RequestBody body);
 
   Single<Response> delete(final String path);
+
+  /**
+   * Performs GET request and converts JSON response body to the object of the given type. Default
+   * implementation converts the body with GsonConverter on the thread emitting the response.
+   * Response body is always closed and unsuccessful response is emitted as YaaSException.
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param typeOfT type of the object represented by the response body
+   * @param <T> type of the object represented by the response body
+   * @return Single wrapping converted response body
+   */
+  default <T> Single<T> get(final String path, final Type typeOfT) {
+    return get(path).map(response -> YaaS.convert(response, typeOfT, YaaS.DEFAULT_CONVERTER));
+  }
+
+  /**
+   * Performs POST request and converts JSON response body to the object of the given type, like
+   * {@link #get(String, Type)}
+   */
+  default <T> Single<T> post(final String path, final RequestBody body, final Type typeOfT) {
+    return post(path, body)
+        .map(response -> YaaS.convert(response, typeOfT, YaaS.DEFAULT_CONVERTER));
+  }
+
+  /**
+   * Performs PUT request and converts JSON response body to the object of the given type, like
+   * {@link #get(String, Type)}
+   */
+  default <T> Single<T> put(final String path, final RequestBody body, final Type typeOfT) {
+    return put(path, body)
+        .map(response -> YaaS.convert(response, typeOfT, YaaS.DEFAULT_CONVERTER));
+  }
+
+  /**
+   * Creates client, which performs each request within the given deadline. Deadline covers
+   * retrieval of the Access Token and the call to the microservice. When it's exceeded, request
+   * fails with TimeoutException and underlying HTTP calls are cancelled.
+   *
+   * @param timeout maximal duration of the whole request
+   * @param unit of the timeout
+   * @return client with the deadline applied to all the requests
+   */
+  default Client withDeadline(final long timeout, final TimeUnit unit) {
+    return new DeadlineClient(this, timeout, unit);
+  }
 }
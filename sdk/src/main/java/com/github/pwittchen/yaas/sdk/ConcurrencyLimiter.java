@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.Response;
+
+/**
+ * Limits number of the requests to each service performed at the same time, so a slow service
+ * can't take all the connections and threads of the client. Limiter can be shared between many
+ * YaaS objects and keeps separate limit for each service identified by {@link ServiceKey}.
+ *
+ * Limit adapts to the service with AIMD algorithm: each successful call increases it by 1 / limit
+ * (about one per round trip), while each sign of the overload (exception, 429 or 5xx status or
+ * call slower than the latency threshold) multiplies it by the backoff ratio. Increase is applied
+ * only when at least half of the limit is used. Requests exceeding the limit fail immediately with
+ * {@link RequestRejectedException}.
+ */
+public class ConcurrencyLimiter {
+
+  private static final int DEFAULT_INITIAL_LIMIT = 20;
+  private static final int DEFAULT_MIN_LIMIT = 1;
+  private static final int DEFAULT_MAX_LIMIT = 200;
+  private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int HTTP_SERVER_ERROR = 500;
+
+  private final ConcurrentMap<ServiceKey, Limit> limits = new ConcurrentHashMap<>();
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final long latencyThreshold;
+
+  /**
+   * Creates limiter starting with 20 concurrent requests per service, adapted between 1 and 200
+   */
+  public ConcurrencyLimiter() {
+    this(new Builder());
+  }
+
+  private ConcurrencyLimiter(final Builder builder) {
+    if (builder.initialLimit < builder.minLimit || builder.initialLimit > builder.maxLimit) {
+      throw new IllegalArgumentException("initialLimit < minLimit || initialLimit > maxLimit");
+    }
+    this.initialLimit = builder.initialLimit;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.backoffRatio = builder.backoffRatio;
+    this.latencyThreshold = builder.latencyThreshold;
+  }
+
+  /**
+   * @return current limit of the concurrent requests to the service
+   */
+  public int getLimit(final ServiceKey key) {
+    final Limit limit = limits.get(key);
+    return limit == null ? initialLimit : limit.getLimit();
+  }
+
+  /**
+   * @return number of the requests to the service currently in progress
+   */
+  public int getInFlight(final ServiceKey key) {
+    final Limit limit = limits.get(key);
+    return limit == null ? 0 : limit.getInFlight();
+  }
+
+  Single<Response> execute(final ServiceKey key, final Single<Response> call) {
+    return Single.defer(() -> {
+      final Limit limit = limits.computeIfAbsent(key, ignored -> new Limit());
+      if (!limit.tryAcquire()) {
+        return Single.error(new RequestRejectedException(
+            "Concurrency limit of " + key + " (" + limit.getLimit() + ") is reached"));
+      }
+      final long start = System.nanoTime();
+      final AtomicBoolean finished = new AtomicBoolean();
+      return call.doOnSuccess(response -> {
+        if (finished.compareAndSet(false, true)) {
+          limit.release(isOverloaded(response.code(), System.nanoTime() - start));
+        }
+      }).doOnError(throwable -> {
+        if (finished.compareAndSet(false, true)) {
+          limit.release(!(throwable instanceof RequestRejectedException));
+        }
+      }).doOnDispose(() -> {
+        if (finished.compareAndSet(false, true)) {
+          limit.release(false);
+        }
+      });
+    });
+  }
+
+  private boolean isOverloaded(final int code, final long duration) {
+    return code == HTTP_TOO_MANY_REQUESTS
+        || code >= HTTP_SERVER_ERROR
+        || (latencyThreshold > 0 && duration > latencyThreshold);
+  }
+
+  private class Limit {
+    private double limit = initialLimit;
+    private int inFlight;
+
+    private synchronized int getLimit() {
+      return (int) limit;
+    }
+
+    private synchronized int getInFlight() {
+      return inFlight;
+    }
+
+    private synchronized boolean tryAcquire() {
+      if (inFlight >= (int) limit) {
+        return false;
+      }
+      inFlight++;
+      return true;
+    }
+
+    private synchronized void release(final boolean overloaded) {
+      final boolean utilized = inFlight * 2 >= limit;
+      inFlight--;
+      if (overloaded) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      } else if (utilized) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+    }
+  }
+
+  public static class Builder {
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+    private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    private long latencyThreshold;
+
+    /**
+     * Sets limit used for the first requests to the service (20 by default)
+     */
+    public Builder withInitialLimit(final int initialLimit) {
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /**
+     * Sets bounds of the adapted limit (from 1 up to 200 by default)
+     */
+    public Builder withLimits(final int minLimit, final int maxLimit) {
+      if (minLimit <= 0 || maxLimit < minLimit) {
+        throw new IllegalArgumentException("minLimit <= 0 || maxLimit < minLimit");
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Sets ratio by which limit is multiplied, when service is overloaded (0.9 by default)
+     */
+    public Builder withBackoffRatio(final double backoffRatio) {
+      if (backoffRatio <= 0 || backoffRatio >= 1) {
+        throw new IllegalArgumentException("backoffRatio <= 0 || backoffRatio >= 1");
+      }
+      this.backoffRatio = backoffRatio;
+      return this;
+    }
+
+    /**
+     * Treats calls slower than the given threshold as signs of the overload (disabled by default)
+     */
+    public Builder withLatencyThreshold(final long latencyThreshold, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (latencyThreshold <= 0) {
+        throw new IllegalArgumentException("latencyThreshold <= 0");
+      }
+      this.latencyThreshold = unit.toNanos(latencyThreshold);
+      return this;
+    }
+
+    public ConcurrencyLimiter build() {
+      return new ConcurrencyLimiter(this);
+    }
+  }
+}
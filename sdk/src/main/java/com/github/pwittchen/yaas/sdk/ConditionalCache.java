@@ -0,0 +1,537 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ByteString;
+
+/**
+ * HTTP cache of the GET responses, which revalidates stored responses with If-None-Match and
+ * If-Modified-Since headers and serves 304 Not Modified responses from the cache. Only successful
+ * responses with ETag or Last-Modified header are stored, unless they're marked as no-store.
+ *
+ * Entries are partitioned by the URL, which contains organization, service (tenant) and version
+ * of the project, and by the client and scope of the Access Token taken from the TokenKey tag of
+ * the request, so the response is served only to the requests made with the same credentials and
+ * entries outlive refreshes of the token. Requests without such tag are partitioned by the digest
+ * of the Authorization header. Responses are kept in memory and, optionally, in the directory on
+ * the local disk. Both tiers are bounded by the size. Headers of the 304 responses update the
+ * stored entry.
+ *
+ * Cache is opt-in and it's installed as an interceptor of the OkHttpClient, e.g. with
+ * {@link YaaSTransport.Builder#withCache(ConditionalCache)}.
+ */
+public class ConditionalCache implements Interceptor {
+
+  private static final String METHOD_GET = "GET";
+  private static final String HEADER_AUTHORIZATION = "Authorization";
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  private static final String HEADER_TRANSFER_ENCODING = "Transfer-Encoding";
+  private static final String HEADER_ETAG = "ETag";
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String NO_STORE = "no-store";
+  private static final String KEY_SEPARATOR = " ";
+  private static final int HTTP_OK = 200;
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final int DEFAULT_MAX_ENTRIES = 1000;
+  private static final long DEFAULT_MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+  private static final long DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+
+  private final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+  private final int maxEntries;
+  private final long maxMemoryBytes;
+  private final long maxEntryBytes;
+  private final DiskStore disk;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private long memoryBytes;
+
+  private ConditionalCache(final Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.maxMemoryBytes = builder.maxMemoryBytes;
+    this.maxEntryBytes = builder.maxEntryBytes;
+    this.disk = builder.directory == null
+        ? null : new DiskStore(builder.directory, builder.maxDiskBytes);
+  }
+
+  @Override public Response intercept(final Chain chain) throws IOException {
+    final Request request = chain.request();
+    final String key = createKey(request);
+
+    if (!METHOD_GET.equals(request.method())) {
+      final Response response = chain.proceed(request);
+      if (response.isSuccessful()) {
+        remove(key);
+      }
+      return response;
+    }
+
+    final Entry cached = get(key);
+    final Response response = chain.proceed(cached == null ? request : cached.revalidate(request));
+
+    if (cached != null && response.code() == HTTP_NOT_MODIFIED) {
+      response.close();
+      hits.increment();
+      final Entry updated = cached.update(response.headers());
+      if (updated != cached) {
+        put(key, updated);
+      }
+      return updated.toResponse(request, response);
+    }
+
+    misses.increment();
+    if (isCacheable(response)) {
+      final ResponseBody body = response.peekBody(maxEntryBytes + 1);
+      if (body.contentLength() <= maxEntryBytes) {
+        put(key, new Entry(response, body.bytes()));
+      }
+    } else if (cached != null) {
+      remove(key);
+    }
+    return response;
+  }
+
+  /**
+   * @return number of responses served from the cache after successful revalidation
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return number of GET responses downloaded from the network
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return number of entries kept in memory
+   */
+  public synchronized int size() {
+    return memory.size();
+  }
+
+  /**
+   * Removes all the entries from memory and disk
+   */
+  public void evictAll() {
+    synchronized (this) {
+      memory.clear();
+      memoryBytes = 0;
+    }
+    if (disk != null) {
+      disk.evictAll();
+    }
+  }
+
+  private String createKey(final Request request) {
+    return createPartition(request).concat(KEY_SEPARATOR).concat(request.url().toString());
+  }
+
+  private static String createPartition(final Request request) {
+    final Object tag = request.tag();
+    if (tag instanceof TokenKey) {
+      final TokenKey tokenKey = (TokenKey) tag;
+      return String.valueOf(tokenKey.clientId).concat(KEY_SEPARATOR)
+          .concat(String.valueOf(tokenKey.scope));
+    }
+    final String authorization = request.header(HEADER_AUTHORIZATION);
+    return authorization == null ? "" : ByteString.encodeUtf8(authorization).sha256().hex();
+  }
+
+  private boolean isCacheable(final Response response) {
+    if (response.code() != HTTP_OK || response.body() == null) {
+      return false;
+    }
+    if (response.header(HEADER_ETAG) == null && response.header(HEADER_LAST_MODIFIED) == null) {
+      return false;
+    }
+    for (String cacheControl : response.headers(HEADER_CACHE_CONTROL)) {
+      if (cacheControl.contains(NO_STORE)) {
+        return false;
+      }
+    }
+    return response.body().contentLength() <= maxEntryBytes;
+  }
+
+  private Entry get(final String key) {
+    synchronized (this) {
+      final Entry entry = memory.get(key);
+      if (entry != null) {
+        return entry;
+      }
+    }
+    if (disk == null) {
+      return null;
+    }
+    final Entry entry = disk.get(key);
+    if (entry != null) {
+      putInMemory(key, entry);
+    }
+    return entry;
+  }
+
+  private void put(final String key, final Entry entry) {
+    putInMemory(key, entry);
+    if (disk != null) {
+      disk.put(key, entry);
+    }
+  }
+
+  private synchronized void putInMemory(final String key, final Entry entry) {
+    final Entry previous = memory.put(key, entry);
+    if (previous != null) {
+      memoryBytes -= previous.size();
+    }
+    memoryBytes += entry.size();
+
+    final Iterator<Entry> eldest = memory.values().iterator();
+    while (eldest.hasNext() && (memory.size() > maxEntries || memoryBytes > maxMemoryBytes)) {
+      memoryBytes -= eldest.next().size();
+      eldest.remove();
+    }
+  }
+
+  private void remove(final String key) {
+    synchronized (this) {
+      final Entry previous = memory.remove(key);
+      if (previous != null) {
+        memoryBytes -= previous.size();
+      }
+    }
+    if (disk != null) {
+      disk.remove(key);
+    }
+  }
+
+  private static class Entry {
+    private final int code;
+    private final String message;
+    private final Headers headers;
+    private final byte[] body;
+
+    private Entry(final Response response, final byte[] body) {
+      this(response.code(), response.message(), response.headers(), body);
+    }
+
+    private Entry(final int code, final String message, final Headers headers,
+        final byte[] body) {
+      this.code = code;
+      this.message = message;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    private long size() {
+      long size = body.length;
+      for (int i = 0; i < headers.size(); i++) {
+        size += headers.name(i).length() + headers.value(i).length();
+      }
+      return size;
+    }
+
+    /**
+     * Returns entry with the headers of the 304 response merged into the stored ones, except the
+     * headers describing the stored body, or this entry when they don't change anything
+     */
+    private Entry update(final Headers networkHeaders) {
+      final Headers.Builder merged = headers.newBuilder();
+      for (String name : networkHeaders.names()) {
+        if (!isContentHeader(name)) {
+          merged.removeAll(name);
+          for (String value : networkHeaders.values(name)) {
+            merged.add(name, value);
+          }
+        }
+      }
+      final Headers updated = merged.build();
+      if (updated.toMultimap().equals(headers.toMultimap())) {
+        return this;
+      }
+      return new Entry(code, message, updated, body);
+    }
+
+    private static boolean isContentHeader(final String name) {
+      return HEADER_CONTENT_TYPE.equalsIgnoreCase(name)
+          || HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)
+          || HEADER_CONTENT_ENCODING.equalsIgnoreCase(name)
+          || HEADER_TRANSFER_ENCODING.equalsIgnoreCase(name);
+    }
+
+    private Request revalidate(final Request request) {
+      final Request.Builder builder = request.newBuilder();
+      final String etag = headers.get(HEADER_ETAG);
+      final String lastModified = headers.get(HEADER_LAST_MODIFIED);
+      if (etag != null) {
+        builder.header(HEADER_IF_NONE_MATCH, etag);
+      }
+      if (lastModified != null) {
+        builder.header(HEADER_IF_MODIFIED_SINCE, lastModified);
+      }
+      return builder.build();
+    }
+
+    private Response toResponse(final Request request, final Response networkResponse) {
+      final String contentType = headers.get(HEADER_CONTENT_TYPE);
+      final MediaType mediaType = contentType == null ? null : MediaType.parse(contentType);
+      return new Response.Builder().request(request)
+          .protocol(networkResponse.protocol())
+          .code(code)
+          .message(message)
+          .headers(headers)
+          .body(ResponseBody.create(mediaType, body))
+          .sentRequestAtMillis(networkResponse.sentRequestAtMillis())
+          .receivedResponseAtMillis(networkResponse.receivedResponseAtMillis())
+          .build();
+    }
+
+    private void writeTo(final DataOutputStream output) throws IOException {
+      output.writeInt(code);
+      output.writeUTF(message);
+      output.writeInt(headers.size());
+      for (int i = 0; i < headers.size(); i++) {
+        output.writeUTF(headers.name(i));
+        output.writeUTF(headers.value(i));
+      }
+      output.writeInt(body.length);
+      output.write(body);
+    }
+
+    private static Entry readFrom(final DataInputStream input) throws IOException {
+      final int code = input.readInt();
+      final String message = input.readUTF();
+      final int headersCount = input.readInt();
+      final Headers.Builder headers = new Headers.Builder();
+      for (int i = 0; i < headersCount; i++) {
+        headers.add(input.readUTF(), input.readUTF());
+      }
+      final byte[] body = new byte[input.readInt()];
+      input.readFully(body);
+      return new Entry(code, message, headers.build(), body);
+    }
+  }
+
+  /**
+   * Stores entries in the files named after the digest of the key. Size of the directory is
+   * bounded and the least recently used files are deleted first. Only the index of the files is
+   * guarded by the lock, while the files are read and written outside of it.
+   */
+  private static class DiskStore {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private final Map<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong temps = new AtomicLong();
+    private long bytes;
+
+    private DiskStore(final File directory, final long maxBytes) {
+      this.directory = directory;
+      this.maxBytes = maxBytes;
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new YaaSException("Couldn't create cache directory " + directory);
+      }
+      final File[] existing = directory.listFiles();
+      if (existing != null) {
+        Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+        for (File file : existing) {
+          if (file.getName().endsWith(TEMP_SUFFIX)) {
+            delete(file);
+          } else {
+            files.put(file.getName(), file.length());
+            bytes += file.length();
+          }
+        }
+      }
+    }
+
+    private Entry get(final String key) {
+      final String name = fileName(key);
+      synchronized (this) {
+        if (files.get(name) == null) {
+          return null;
+        }
+      }
+      try (DataInputStream input = new DataInputStream(
+          new FileInputStream(new File(directory, name)))) {
+        return Entry.readFrom(input);
+      } catch (IOException e) {
+        remove(key);
+        return null;
+      }
+    }
+
+    private void put(final String key, final Entry entry) {
+      final String name = fileName(key);
+      final File temp = new File(directory,
+          name.concat(".").concat(String.valueOf(temps.incrementAndGet())).concat(TEMP_SUFFIX));
+      final File file = new File(directory, name);
+      try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temp))) {
+        entry.writeTo(output);
+      } catch (IOException e) {
+        delete(temp);
+        return;
+      }
+      final long size = temp.length();
+      try {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        delete(temp);
+        remove(key);
+        return;
+      }
+
+      final List<String> evicted = new ArrayList<>();
+      synchronized (this) {
+        final Long previous = files.put(name, size);
+        bytes += previous == null ? size : size - previous;
+        final Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (eldest.hasNext() && bytes > maxBytes) {
+          final Map.Entry<String, Long> evictedFile = eldest.next();
+          bytes -= evictedFile.getValue();
+          evicted.add(evictedFile.getKey());
+          eldest.remove();
+        }
+      }
+      for (String evictedName : evicted) {
+        delete(new File(directory, evictedName));
+      }
+    }
+
+    private void remove(final String key) {
+      final String name = fileName(key);
+      synchronized (this) {
+        final Long size = files.remove(name);
+        if (size == null) {
+          return;
+        }
+        bytes -= size;
+      }
+      delete(new File(directory, name));
+    }
+
+    private void evictAll() {
+      final List<String> names;
+      synchronized (this) {
+        names = new ArrayList<>(files.keySet());
+        files.clear();
+        bytes = 0;
+      }
+      for (String name : names) {
+        delete(new File(directory, name));
+      }
+    }
+
+    private static String fileName(final String key) {
+      return ByteString.encodeUtf8(key).sha256().hex();
+    }
+
+    private static void delete(final File file) {
+      if (file.exists() && !file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  public static class Builder {
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+    private long maxEntryBytes = DEFAULT_MAX_ENTRY_BYTES;
+    private File directory;
+    private long maxDiskBytes;
+
+    /**
+     * Sets maximal number of entries kept in memory (1000 by default)
+     */
+    public Builder withMaxEntries(final int maxEntries) {
+      if (maxEntries <= 0) {
+        throw new IllegalArgumentException("maxEntries <= 0");
+      }
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets maximal size of the entries kept in memory (16 MB by default)
+     */
+    public Builder withMaxMemoryBytes(final long maxMemoryBytes) {
+      if (maxMemoryBytes <= 0) {
+        throw new IllegalArgumentException("maxMemoryBytes <= 0");
+      }
+      this.maxMemoryBytes = maxMemoryBytes;
+      return this;
+    }
+
+    /**
+     * Sets maximal size of the single response body, larger responses are not stored
+     * (1 MB by default)
+     */
+    public Builder withMaxEntryBytes(final long maxEntryBytes) {
+      if (maxEntryBytes <= 0) {
+        throw new IllegalArgumentException("maxEntryBytes <= 0");
+      }
+      this.maxEntryBytes = maxEntryBytes;
+      return this;
+    }
+
+    /**
+     * Enables storing entries in the directory on the local disk (disabled by default)
+     */
+    public Builder withDirectory(final File directory, final long maxDiskBytes) {
+      Objects.requireNonNull(directory, "directory == null");
+      if (maxDiskBytes <= 0) {
+        throw new IllegalArgumentException("maxDiskBytes <= 0");
+      }
+      this.directory = directory;
+      this.maxDiskBytes = maxDiskBytes;
+      return this;
+    }
+
+    public ConditionalCache build() {
+      return new ConditionalCache(this);
+    }
+  }
+}
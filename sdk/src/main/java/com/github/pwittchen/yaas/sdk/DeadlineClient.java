@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Client applying the deadline to each request of the wrapped client. It's created by the default
+ * implementation of {@link Client#withDeadline(long, TimeUnit)}. Exceeded deadline disposes the
+ * request, so its HTTP call is cancelled.
+ */
+final class DeadlineClient implements Client {
+
+  private final Client client;
+  private final long deadline;
+
+  DeadlineClient(final Client client, final long timeout, final TimeUnit unit) {
+    Objects.requireNonNull(client, "client == null");
+    Objects.requireNonNull(unit, "unit == null");
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("timeout <= 0");
+    }
+    this.client = client;
+    this.deadline = unit.toMillis(timeout);
+  }
+
+  @Override public Single<Response> get(final String path) {
+    return withDeadline(client.get(path));
+  }
+
+  @Override public Single<Response> post(final String path, final RequestBody body) {
+    return withDeadline(client.post(path, body));
+  }
+
+  @Override public Single<Response> put(final String path, final RequestBody body) {
+    return withDeadline(client.put(path, body));
+  }
+
+  @Override public Single<Response> delete(final String path, final RequestBody body) {
+    return withDeadline(client.delete(path, body));
+  }
+
+  @Override public Single<Response> delete(final String path) {
+    return withDeadline(client.delete(path));
+  }
+
+  @Override public <T> Single<T> get(final String path, final Type typeOfT) {
+    return withDeadline(client.<T>get(path, typeOfT));
+  }
+
+  @Override
+  public <T> Single<T> post(final String path, final RequestBody body, final Type typeOfT) {
+    return withDeadline(client.<T>post(path, body, typeOfT));
+  }
+
+  @Override
+  public <T> Single<T> put(final String path, final RequestBody body, final Type typeOfT) {
+    return withDeadline(client.<T>put(path, body, typeOfT));
+  }
+
+  @Override public Client withDeadline(final long timeout, final TimeUnit unit) {
+    return new DeadlineClient(client, timeout, unit);
+  }
+
+  private <T> Single<T> withDeadline(final Single<T> request) {
+    return request.timeout(deadline, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+
+/**
+ * Base URL of the YaaS API, to which paths of the token endpoint and the services are appended.
+ * Besides the public {@link Zone}s, it can point to a regional gateway, a sidecar proxy or a
+ * local stand-in of the YaaS, e.g. {@code Endpoint.of("http://localhost:8080/")}. Several
+ * endpoints of the same logical zone can be combined into {@link EndpointGroup}.
+ */
+public interface Endpoint {
+
+  /**
+   * @return base URL ending with a slash
+   */
+  String getUrl();
+
+  /**
+   * Creates endpoint with the given base URL
+   *
+   * @param url base URL, slash is appended when it's missing
+   * @return endpoint with the given URL
+   */
+  static Endpoint of(final String url) {
+    Objects.requireNonNull(url, "url == null");
+    return new UrlEndpoint(url.endsWith("/") ? url : url.concat("/"));
+  }
+}
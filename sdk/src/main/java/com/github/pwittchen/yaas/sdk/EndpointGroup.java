@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+
+/**
+ * Several endpoints serving the same logical zone, e.g. regional gateways or replicas of a proxy.
+ * Each request is routed to one of them by {@link YaaSAuthorization}, so the group can be used
+ * wherever a single endpoint is accepted.
+ *
+ * Endpoint is chosen with the power of two choices: two random endpoints are compared and the one
+ * with the lower cost is used. Cost is the moving average of the latency multiplied by the number
+ * of requests in progress and increased by the moving average of the error rate, so slow and
+ * failing endpoints get less traffic, while they're still probed from time to time. Endpoint
+ * failing several times in a row is skipped for the down time. When connection to the endpoint
+ * can't be established, request is sent to another one.
+ */
+public class EndpointGroup implements Endpoint {
+
+  private static final double DEFAULT_DECAY = 0.2;
+  private static final int DEFAULT_MAX_FAILURES = 3;
+  private static final long DEFAULT_DOWN_TIME_SECONDS = 10;
+  private static final double MAX_ERROR_RATE = 0.99;
+
+  private final List<Member> members;
+  private final double decay;
+  private final int maxFailures;
+  private final long downTime;
+
+  private EndpointGroup(final Builder builder) {
+    if (builder.endpoints.isEmpty()) {
+      throw new IllegalArgumentException("endpoints are empty");
+    }
+    final List<Member> members = new ArrayList<>();
+    for (Endpoint endpoint : builder.endpoints) {
+      members.add(new Member(endpoint));
+    }
+    this.members = Collections.unmodifiableList(members);
+    this.decay = builder.decay;
+    this.maxFailures = builder.maxFailures;
+    this.downTime = builder.downTime;
+  }
+
+  /**
+   * @return URL of the first endpoint of the group
+   */
+  @Override public String getUrl() {
+    return members.get(0).endpoint.getUrl();
+  }
+
+  public List<Endpoint> getEndpoints() {
+    final List<Endpoint> endpoints = new ArrayList<>();
+    for (Member member : members) {
+      endpoints.add(member.endpoint);
+    }
+    return endpoints;
+  }
+
+  /**
+   * @return moving average of the latency of the endpoint in nanoseconds
+   */
+  public long getLatency(final Endpoint endpoint) {
+    return (long) find(endpoint).latency;
+  }
+
+  /**
+   * @return moving average of the error rate of the endpoint between 0 and 1
+   */
+  public double getErrorRate(final Endpoint endpoint) {
+    return find(endpoint).errorRate;
+  }
+
+  /**
+   * @return true if the endpoint is skipped after too many failures in a row
+   */
+  public boolean isDown(final Endpoint endpoint) {
+    return find(endpoint).isDown(System.nanoTime());
+  }
+
+  @Override public String toString() {
+    return "EndpointGroup{endpoints=" + getEndpoints() + '}';
+  }
+
+  Member select() {
+    return select(null);
+  }
+
+  /**
+   * Chooses endpoint other than the excluded one, unless it's the only one
+   */
+  Member select(final Member excluded) {
+    final long now = System.nanoTime();
+    final List<Member> candidates = new ArrayList<>(members.size());
+    for (Member member : members) {
+      if (member != excluded && !member.isDown(now)) {
+        candidates.add(member);
+      }
+    }
+    if (candidates.isEmpty()) {
+      for (Member member : members) {
+        if (member != excluded) {
+          candidates.add(member);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return excluded;
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final int first = random.nextInt(candidates.size());
+    final int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+    final Member a = candidates.get(first);
+    final Member b = candidates.get(second);
+    return a.getCost() <= b.getCost() ? a : b;
+  }
+
+  /**
+   * @return member serving the given URL or null if URL doesn't belong to the group
+   */
+  Member find(final HttpUrl url) {
+    for (Member member : members) {
+      if (member.contains(url)) {
+        return member;
+      }
+    }
+    return null;
+  }
+
+  private Member find(final Endpoint endpoint) {
+    for (Member member : members) {
+      if (member.endpoint.equals(endpoint)) {
+        return member;
+      }
+    }
+    throw new IllegalArgumentException("endpoint is not in the group: " + endpoint);
+  }
+
+  class Member {
+    final Endpoint endpoint;
+    final HttpUrl baseUrl;
+    private double latency;
+    private double errorRate;
+    private int inFlight;
+    private int failures;
+    private long downUntil;
+
+    private Member(final Endpoint endpoint) {
+      this.endpoint = endpoint;
+      this.baseUrl = HttpUrl.parse(endpoint.getUrl());
+      if (baseUrl == null) {
+        throw new IllegalArgumentException("unexpected url: " + endpoint.getUrl());
+      }
+    }
+
+    synchronized void onStart() {
+      inFlight++;
+    }
+
+    synchronized void onEnd(final long duration, final boolean failed) {
+      inFlight--;
+      latency = latency == 0 ? duration : latency + decay * (duration - latency);
+      errorRate += decay * ((failed ? 1 : 0) - errorRate);
+      failures = failed ? failures + 1 : 0;
+      if (failures >= maxFailures) {
+        downUntil = System.nanoTime() + downTime;
+        failures = 0;
+      }
+    }
+
+    synchronized void onCancel() {
+      inFlight--;
+    }
+
+    private synchronized double getCost() {
+      return (latency + 1) * (inFlight + 1) / (1 - Math.min(errorRate, MAX_ERROR_RATE));
+    }
+
+    private synchronized boolean isDown(final long now) {
+      return downUntil != 0 && now - downUntil < 0;
+    }
+
+    private boolean contains(final HttpUrl url) {
+      return baseUrl.scheme().equals(url.scheme())
+          && baseUrl.host().equals(url.host())
+          && baseUrl.port() == url.port()
+          && url.encodedPath().startsWith(baseUrl.encodedPath());
+    }
+  }
+
+  public static class Builder {
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private double decay = DEFAULT_DECAY;
+    private int maxFailures = DEFAULT_MAX_FAILURES;
+    private long downTime = TimeUnit.SECONDS.toNanos(DEFAULT_DOWN_TIME_SECONDS);
+
+    public Builder withEndpoint(final Endpoint endpoint) {
+      Objects.requireNonNull(endpoint, "endpoint == null");
+      if (endpoint instanceof EndpointGroup) {
+        throw new IllegalArgumentException("groups can't be nested");
+      }
+      this.endpoints.add(endpoint);
+      return this;
+    }
+
+    public Builder withEndpoint(final String url) {
+      return withEndpoint(Endpoint.of(url));
+    }
+
+    /**
+     * Sets weight of the latest request in the moving averages of the latency and the error rate
+     * (0.2 by default)
+     */
+    public Builder withDecay(final double decay) {
+      if (decay <= 0 || decay > 1) {
+        throw new IllegalArgumentException("decay <= 0 || decay > 1");
+      }
+      this.decay = decay;
+      return this;
+    }
+
+    /**
+     * Sets number of the failures in a row after which endpoint is skipped (3 by default) and
+     * the time for which it's skipped (10 seconds by default)
+     */
+    public Builder withDownTime(final int maxFailures, final long downTime, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (maxFailures <= 0 || downTime <= 0) {
+        throw new IllegalArgumentException("maxFailures <= 0 || downTime <= 0");
+      }
+      this.maxFailures = maxFailures;
+      this.downTime = unit.toNanos(downTime);
+      return this;
+    }
+
+    public EndpointGroup build() {
+      return new EndpointGroup(this);
+    }
+  }
+}
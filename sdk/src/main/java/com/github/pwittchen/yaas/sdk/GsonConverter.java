@@ -18,10 +18,12 @@ package com.github.pwittchen.yaas.sdk;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.io.Reader;
 import java.lang.reflect.Type;
 
 /**
- * Converts data from JSON to POJO and backwards using Google Gson library
+ * Converts data from JSON to POJO and backwards using Google Gson library. Streaming methods read
+ * and write JSON incrementally with Gson's JsonReader and JsonWriter.
  */
 public class GsonConverter implements JsonConverter {
 
@@ -40,4 +42,12 @@ public class GsonConverter implements JsonConverter {
   @Override public <T> String toJson(T object, Type typeOfT) {
     return gson.toJson(object, typeOfT);
   }
+
+  @Override public <T> T fromJson(Reader reader, Type typeOfT) {
+    return gson.fromJson(reader, typeOfT);
+  }
+
+  @Override public <T> void toJson(T object, Type typeOfT, Appendable writer) {
+    gson.toJson(object, typeOfT, writer);
+  }
 }
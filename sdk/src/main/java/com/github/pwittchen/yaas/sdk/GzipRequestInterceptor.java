@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.io.IOException;
+import java.util.Objects;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses bodies of the requests with gzip while they're written to the network, so the whole
+ * compressed body is never kept in memory. Bodies smaller than the threshold are sent as they are,
+ * because compression wouldn't pay off. Bodies of unknown length are always compressed. Requests
+ * which already have Content-Encoding header and bodies wrapped with {@link #uncompressed(
+ * RequestBody)} are not compressed, which can be used for services rejecting compressed requests.
+ *
+ * Responses don't need any handling, because OkHttp asks for gzip encoding and decompresses
+ * response bodies transparently while they're read.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  private static final String GZIP = "gzip";
+  private static final long DEFAULT_MIN_BYTES = 1024;
+
+  private final long minBytes;
+
+  /**
+   * Creates interceptor compressing bodies of at least 1 KB
+   */
+  public GzipRequestInterceptor() {
+    this(DEFAULT_MIN_BYTES);
+  }
+
+  /**
+   * Creates interceptor
+   *
+   * @param minBytes minimal length of the body in bytes, which is compressed
+   */
+  public GzipRequestInterceptor(final long minBytes) {
+    if (minBytes < 0) {
+      throw new IllegalArgumentException("minBytes < 0");
+    }
+    this.minBytes = minBytes;
+  }
+
+  /**
+   * Marks body, which should never be compressed
+   *
+   * @param body of the request
+   * @return body sent as it is
+   */
+  public static RequestBody uncompressed(final RequestBody body) {
+    Objects.requireNonNull(body, "body == null");
+    return new UncompressedBody(body);
+  }
+
+  @Override public Response intercept(final Chain chain) throws IOException {
+    final Request request = chain.request();
+    final RequestBody body = request.body();
+    if (body == null
+        || body instanceof UncompressedBody
+        || request.header(HEADER_CONTENT_ENCODING) != null) {
+      return chain.proceed(request);
+    }
+
+    final long contentLength = body.contentLength();
+    if (contentLength != -1 && contentLength < minBytes) {
+      return chain.proceed(request);
+    }
+
+    return chain.proceed(request.newBuilder()
+        .header(HEADER_CONTENT_ENCODING, GZIP)
+        .method(request.method(), new GzipBody(body))
+        .build());
+  }
+
+  public long getMinBytes() {
+    return minBytes;
+  }
+
+  private static class GzipBody extends RequestBody {
+    private final RequestBody body;
+
+    private GzipBody(final RequestBody body) {
+      this.body = body;
+    }
+
+    @Override public MediaType contentType() {
+      return body.contentType();
+    }
+
+    @Override public long contentLength() {
+      return -1;
+    }
+
+    @Override public void writeTo(final BufferedSink sink) throws IOException {
+      try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+        body.writeTo(gzipSink);
+      }
+    }
+  }
+
+  private static class UncompressedBody extends RequestBody {
+    private final RequestBody body;
+
+    private UncompressedBody(final RequestBody body) {
+      this.body = body;
+    }
+
+    @Override public MediaType contentType() {
+      return body.contentType();
+    }
+
+    @Override public long contentLength() throws IOException {
+      return body.contentLength();
+    }
+
+    @Override public void writeTo(final BufferedSink sink) throws IOException {
+      body.writeTo(sink);
+    }
+  }
+}
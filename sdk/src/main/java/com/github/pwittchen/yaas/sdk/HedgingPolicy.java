@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.Response;
+
+/**
+ * Cuts tail latency of GET requests by sending a second identical request, when there's no
+ * response after the hedging delay, and using whichever response comes first. When the first call
+ * responds first, the second one is cancelled, which cancels its OkHttp Call. When the second call
+ * responds first, the first one is left running, so its latency can still be observed, and its
+ * response is closed. Response of the call, which lost by a narrow margin, is closed as well.
+ *
+ * Delay is either fixed or follows the given percentile (95th by default) of the latencies of the
+ * first calls observed by the policy, so only the slowest requests are hedged. Latencies of the
+ * hedged calls are not observed, so the delay doesn't shrink when hedging cuts the tail latency.
+ * Latencies are collected in generations of 10000 requests, so the delay follows changes of the
+ * service. Number of the hedged requests is limited to the given share of all the requests (5% by
+ * default), so hedging can't add much load to the service, even when it's slow as a whole. Policy
+ * should be shared by the YaaS objects calling the same service.
+ */
+public class HedgingPolicy {
+
+  private static final double DEFAULT_PERCENTILE = 95;
+  private static final long DEFAULT_INITIAL_DELAY_MILLIS = 100;
+  private static final long DEFAULT_MIN_DELAY_MILLIS = 1;
+  private static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+  private static final int MIN_SAMPLES = 100;
+  private static final int SAMPLES_PER_GENERATION = 10000;
+
+  private final long fixedDelay;
+  private final double percentile;
+  private final long minDelay;
+  private final RetryBudget budget;
+  private final Scheduler scheduler;
+  private final AtomicReference<LatencyHistogram> latencies =
+      new AtomicReference<>(new LatencyHistogram());
+  private final AtomicLong hedgedRequests = new AtomicLong();
+  private final AtomicLong wonHedges = new AtomicLong();
+  private volatile long delay;
+
+  /**
+   * Creates policy hedging requests slower than 95th percentile of the observed latencies, up
+   * to 5% of the requests
+   */
+  public HedgingPolicy() {
+    this(new Builder());
+  }
+
+  private HedgingPolicy(final Builder builder) {
+    this.fixedDelay = builder.fixedDelay;
+    this.percentile = builder.percentile;
+    this.minDelay = builder.minDelay;
+    this.budget = new RetryBudget(builder.maxHedgeRatio, 0);
+    this.scheduler = builder.scheduler;
+    this.delay = builder.fixedDelay > 0 ? builder.fixedDelay : builder.initialDelay;
+  }
+
+  /**
+   * @return current hedging delay in nanoseconds
+   */
+  public long getDelay() {
+    return delay;
+  }
+
+  /**
+   * @return number of the requests for which the second call was sent
+   */
+  public long getHedgedRequests() {
+    return hedgedRequests.get();
+  }
+
+  /**
+   * @return number of the hedged requests, for which the second call responded first
+   */
+  public long getWonHedges() {
+    return wonHedges.get();
+  }
+
+  /**
+   * First call is subscribed outside of the amb, so it isn't cancelled when the second call wins.
+   * It's cancelled when the request is disposed or fails before any response is used.
+   */
+  Single<Response> execute(final Single<Response> call) {
+    return Single.defer(() -> {
+      budget.onRequest();
+      final long start = System.nanoTime();
+      final AtomicBoolean answered = new AtomicBoolean();
+      final AtomicBoolean hedgeWon = new AtomicBoolean();
+      final SingleSubject<Response> first = SingleSubject.create();
+      final Disposable firstCall = call.subscribe(response -> {
+        record(start);
+        if (answered.compareAndSet(false, true)) {
+          first.onSuccess(response);
+        } else {
+          YaaS.close(response);
+        }
+      }, first::onError);
+      final Single<Response> hedge = Single.timer(delay, TimeUnit.NANOSECONDS, scheduler)
+          .flatMap(ignored -> {
+            if (!budget.tryAcquire()) {
+              return Single.never();
+            }
+            hedgedRequests.incrementAndGet();
+            return call.flatMap(response -> {
+              if (!answered.compareAndSet(false, true)) {
+                YaaS.close(response);
+                return Single.never();
+              }
+              hedgeWon.set(true);
+              wonHedges.incrementAndGet();
+              return Single.just(response);
+            });
+          });
+      return Single.amb(Arrays.asList(first, hedge)).doFinally(() -> {
+        if (!hedgeWon.get()) {
+          firstCall.dispose();
+        }
+      });
+    });
+  }
+
+  /**
+   * Records latency of the first call and updates the delay every 100 samples, which is enough
+   * to keep it current without computing the percentile for each request
+   */
+  private void record(final long start) {
+    final LatencyHistogram histogram = latencies.get();
+    histogram.record(System.nanoTime() - start);
+    final long count = histogram.getCount();
+    if (fixedDelay > 0 || count % MIN_SAMPLES != 0) {
+      return;
+    }
+    final long percentileDelay = TimeUnit.MICROSECONDS.toNanos(histogram.getPercentile(percentile));
+    delay = Math.max(percentileDelay, minDelay);
+    if (count >= SAMPLES_PER_GENERATION) {
+      latencies.compareAndSet(histogram, new LatencyHistogram());
+    }
+  }
+
+  public static class Builder {
+    private long fixedDelay;
+    private double percentile = DEFAULT_PERCENTILE;
+    private long initialDelay = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_DELAY_MILLIS);
+    private long minDelay = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_DELAY_MILLIS);
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+    private Scheduler scheduler = Schedulers.computation();
+
+    /**
+     * Sets fixed hedging delay instead of the one following observed latencies
+     */
+    public Builder withDelay(final long delay, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (delay <= 0) {
+        throw new IllegalArgumentException("delay <= 0");
+      }
+      this.fixedDelay = unit.toNanos(delay);
+      return this;
+    }
+
+    /**
+     * Sets percentile of the observed latencies used as the hedging delay (95 by default),
+     * delay used until 100 latencies are observed (100 milliseconds by default) and the minimal
+     * delay (1 millisecond by default)
+     */
+    public Builder withPercentile(final double percentile, final long initialDelay,
+        final long minDelay, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (percentile <= 0 || percentile >= 100) {
+        throw new IllegalArgumentException("percentile <= 0 || percentile >= 100");
+      }
+      if (initialDelay <= 0 || minDelay <= 0) {
+        throw new IllegalArgumentException("initialDelay <= 0 || minDelay <= 0");
+      }
+      this.percentile = percentile;
+      this.initialDelay = unit.toNanos(initialDelay);
+      this.minDelay = unit.toNanos(minDelay);
+      return this;
+    }
+
+    /**
+     * Sets maximal share of the hedged requests (0.05 by default)
+     */
+    public Builder withMaxHedgeRatio(final double maxHedgeRatio) {
+      if (maxHedgeRatio <= 0 || maxHedgeRatio > 1) {
+        throw new IllegalArgumentException("maxHedgeRatio <= 0 || maxHedgeRatio > 1");
+      }
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    /**
+     * Sets scheduler on which delays are measured, Schedulers.computation() by default
+     */
+    public Builder withScheduler(final Scheduler scheduler) {
+      Objects.requireNonNull(scheduler, "scheduler == null");
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    public HedgingPolicy build() {
+      return new HedgingPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.OkHttpClient;
+
+/**
+ * Records metrics of the requests in memory: latency histograms per HTTP method and path template,
+ * counters of the status codes, number of requests in progress, number of fetched Access Tokens,
+ * token cache hits and requests waiting for the token fetched by another request. Path template
+ * is created by replacing segments containing digits with {id} and removing the query, e.g.
+ * GET products/{id}, so the number of histograms stays small.
+ * When the client is provided, gauges of its connection pool and dispatcher are available too.
+ */
+public class InMemoryMetrics implements MetricsListener {
+
+  private static final int MAX_ENDPOINTS = 1000;
+  private static final String OTHER_ENDPOINTS = "other";
+  private static final String ID_SEGMENT = "{id}";
+  private static final char PATH_SEPARATOR = '/';
+  private static final char QUERY_SEPARATOR = '?';
+  private static final char SPACE = ' ';
+
+  private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder tokenCacheHits = new LongAdder();
+  private final LongAdder tokenWaits = new LongAdder();
+  private final LongAdder tokenFetches = new LongAdder();
+  private final LongAdder tokenFetchFailures = new LongAdder();
+  private final LatencyHistogram tokenLatency = new LatencyHistogram();
+  private final OkHttpClient client;
+
+  /**
+   * Creates metrics without gauges of the connection pool and dispatcher
+   */
+  public InMemoryMetrics() {
+    this.client = null;
+  }
+
+  /**
+   * Creates metrics with gauges of the connection pool and dispatcher of the given client
+   *
+   * @param client used by YaaSAuthorization, e.g. {@link YaaSTransport#shared()}
+   */
+  public InMemoryMetrics(final OkHttpClient client) {
+    Objects.requireNonNull(client, "client == null");
+    this.client = client;
+  }
+
+  @Override public void onRequestStart(final String method, final String path) {
+    inFlight.incrementAndGet();
+  }
+
+  @Override public void onRequestEnd(final String method, final String path, final int code,
+      final long durationNanos) {
+    inFlight.decrementAndGet();
+    getLatency(method, path).record(durationNanos);
+    statusCodes.computeIfAbsent(code, key -> new LongAdder()).increment();
+  }
+
+  @Override public void onRequestFailed(final String method, final String path,
+      final Throwable error, final long durationNanos) {
+    inFlight.decrementAndGet();
+    getLatency(method, path).record(durationNanos);
+    failures.increment();
+  }
+
+  @Override public void onTokenCacheHit(final TokenKey key) {
+    tokenCacheHits.increment();
+  }
+
+  @Override public void onTokenWaited(final TokenKey key, final long durationNanos) {
+    tokenWaits.increment();
+  }
+
+  @Override public void onTokenFetched(final TokenKey key, final long durationNanos,
+      final boolean successful) {
+    tokenFetches.increment();
+    tokenLatency.record(durationNanos);
+    if (!successful) {
+      tokenFetchFailures.increment();
+    }
+  }
+
+  /**
+   * @return latency histograms of the requests by method and path template, e.g.
+   * GET products/{id}
+   */
+  public Map<String, LatencyHistogram> getLatencies() {
+    return Collections.unmodifiableMap(new TreeMap<>(latencies));
+  }
+
+  /**
+   * @return numbers of the responses by status code
+   */
+  public Map<Integer, Long> getStatusCodes() {
+    final Map<Integer, Long> result = new TreeMap<>();
+    statusCodes.forEach((code, count) -> result.put(code, count.sum()));
+    return Collections.unmodifiableMap(result);
+  }
+
+  public int getInFlightRequests() {
+    return inFlight.get();
+  }
+
+  /**
+   * @return number of requests failed without response or cancelled
+   */
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getTokenCacheHits() {
+    return tokenCacheHits.sum();
+  }
+
+  /**
+   * @return number of requests, which waited for the token fetched by another request
+   */
+  public long getTokenWaits() {
+    return tokenWaits.sum();
+  }
+
+  public long getTokenFetches() {
+    return tokenFetches.sum();
+  }
+
+  public long getTokenFetchFailures() {
+    return tokenFetchFailures.sum();
+  }
+
+  public LatencyHistogram getTokenLatency() {
+    return tokenLatency;
+  }
+
+  /**
+   * @return number of open connections in the pool or -1 when the client is not provided
+   */
+  public int getConnectionCount() {
+    return client == null ? -1 : client.connectionPool().connectionCount();
+  }
+
+  /**
+   * @return number of idle connections in the pool or -1 when the client is not provided
+   */
+  public int getIdleConnectionCount() {
+    return client == null ? -1 : client.connectionPool().idleConnectionCount();
+  }
+
+  /**
+   * @return number of calls waiting for the dispatcher or -1 when the client is not provided
+   */
+  public int getQueuedCallsCount() {
+    return client == null ? -1 : client.dispatcher().queuedCallsCount();
+  }
+
+  /**
+   * @return number of calls executed by the dispatcher or -1 when the client is not provided
+   */
+  public int getRunningCallsCount() {
+    return client == null ? -1 : client.dispatcher().runningCallsCount();
+  }
+
+  private LatencyHistogram getLatency(final String method, final String path) {
+    final String endpoint = createTemplate(method, path);
+    final LatencyHistogram latency = latencies.get(endpoint);
+    if (latency != null) {
+      return latency;
+    }
+    if (latencies.size() >= MAX_ENDPOINTS) {
+      return latencies.computeIfAbsent(method + SPACE + OTHER_ENDPOINTS,
+          key -> new LatencyHistogram());
+    }
+    return latencies.computeIfAbsent(endpoint, key -> new LatencyHistogram());
+  }
+
+  static String createTemplate(final String method, final String path) {
+    final StringBuilder template = new StringBuilder(method.length() + path.length() + 1);
+    template.append(method).append(SPACE);
+    final int query = path.indexOf(QUERY_SEPARATOR);
+    final int end = query == -1 ? path.length() : query;
+    int start = 0;
+    while (start <= end) {
+      int separator = path.indexOf(PATH_SEPARATOR, start);
+      if (separator == -1 || separator > end) {
+        separator = end;
+      }
+      if (start > 0) {
+        template.append(PATH_SEPARATOR);
+      }
+      if (containsDigit(path, start, separator)) {
+        template.append(ID_SEGMENT);
+      } else {
+        template.append(path, start, separator);
+      }
+      start = separator + 1;
+    }
+    return template.toString();
+  }
+
+  private static boolean containsDigit(final String path, final int start, final int end) {
+    for (int i = start; i < end; i++) {
+      if (Character.isDigit(path.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
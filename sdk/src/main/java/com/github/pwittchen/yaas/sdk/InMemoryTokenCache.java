@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.SingleSubject;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps Access Tokens in memory and reuses them until the safety margin before their expiration.
+ * Concurrent callers missing the token for the same key share a single in-flight token request.
+ * Failed requests are not cached, so the next caller starts a new one.
+ *
+ * Cache can be bounded by the number of entries and by the idle time of the entry, so it can be
+ * shared between many YaaS objects of different tenants. When the limit is exceeded, the least
+ * recently used entries are evicted.
+ *
+ * When refresh scheduler is set, a new token is requested in the background some time before the
+ * expiration of the current one and swapped in atomically, so requests don't wait for the token
+ * endpoint. Short-lived tokens are refreshed after half of their usable lifetime at the earliest.
+ * Failed refresh is retried with exponential backoff while the current token is valid.
+ */
+public class InMemoryTokenCache implements TokenCache {
+
+  private static final long DEFAULT_SAFETY_MARGIN_SECONDS = 60;
+  private static final long DEFAULT_REFRESH_AHEAD_SECONDS = 300;
+  private static final long DEFAULT_MIN_REFRESH_BACKOFF_SECONDS = 1;
+  private static final long DEFAULT_MAX_REFRESH_BACKOFF_SECONDS = 60;
+
+  private final Map<TokenKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final long safetyMargin;
+  private final long refreshAhead;
+  private final long minRefreshBackoff;
+  private final long maxRefreshBackoff;
+  private final Scheduler refreshScheduler;
+  private final int maxSize;
+  private final long expireAfterAccess;
+
+  /**
+   * Creates token cache with default safety margin of 60 seconds
+   */
+  public InMemoryTokenCache() {
+    this(DEFAULT_SAFETY_MARGIN_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates token cache
+   *
+   * @param safetyMargin time before the expiration, when token is no longer reused
+   * @param unit of the safety margin
+   */
+  public InMemoryTokenCache(final long safetyMargin, final TimeUnit unit) {
+    this(new Builder().withSafetyMargin(safetyMargin, unit));
+  }
+
+  private InMemoryTokenCache(final Builder builder) {
+    if (builder.refreshScheduler != null && builder.refreshAhead <= builder.safetyMargin) {
+      throw new IllegalArgumentException("refreshAhead <= safetyMargin");
+    }
+    this.safetyMargin = builder.safetyMargin;
+    this.refreshAhead = builder.refreshAhead;
+    this.minRefreshBackoff = builder.minRefreshBackoff;
+    this.maxRefreshBackoff = builder.maxRefreshBackoff;
+    this.refreshScheduler = builder.refreshScheduler;
+    this.maxSize = builder.maxSize;
+    this.expireAfterAccess = builder.expireAfterAccess;
+  }
+
+  @Override
+  public Single<AccessToken> get(final TokenKey key, final Single<AccessToken> loader) {
+    return Single.defer(() -> getEntry(key).get(loader));
+  }
+
+  @Override public AccessToken getIfPresent(final TokenKey key) {
+    final Entry entry = lookup(key);
+    if (entry == null) {
+      return null;
+    }
+    final AccessToken current = entry.token.get();
+    if (current == null || !current.isValid(System.currentTimeMillis(), safetyMargin)) {
+      return null;
+    }
+    entry.lastAccess = System.currentTimeMillis();
+    return current;
+  }
+
+  /**
+   * @return number of the keys currently stored in the cache
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  @Override public void invalidate(final TokenKey key) {
+    final Entry entry = lookup(key);
+    if (entry != null) {
+      entry.token.set(null);
+    }
+  }
+
+  @Override public void invalidate(final TokenKey key, final String value) {
+    final Entry entry = lookup(key);
+    if (entry != null) {
+      final AccessToken current = entry.token.get();
+      if (current != null && current.value.equals(value)) {
+        entry.token.compareAndSet(current, null);
+      }
+    }
+  }
+
+  public long getSafetyMargin() {
+    return safetyMargin;
+  }
+
+  public long getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  public boolean isRefreshEnabled() {
+    return refreshScheduler != null;
+  }
+
+  private synchronized Entry lookup(final TokenKey key) {
+    return entries.get(key);
+  }
+
+  private synchronized Entry getEntry(final TokenKey key) {
+    final Entry entry = entries.get(key);
+    if (entry != null) {
+      return entry;
+    }
+    final Entry newEntry = new Entry();
+    entries.put(key, newEntry);
+    evict(key);
+    return newEntry;
+  }
+
+  /**
+   * Removes idle and least recently used entries, starting from the eldest one. Entries are kept
+   * in the access order, so idle entries are found at the head. Inserted entry is never evicted,
+   * because its caller may already wait for its token.
+   */
+  private void evict(final TokenKey insertedKey) {
+    final long now = System.currentTimeMillis();
+    final Iterator<Map.Entry<TokenKey, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<TokenKey, Entry> eldest = iterator.next();
+      if (eldest.getKey().equals(insertedKey)
+          || (entries.size() <= maxSize && !eldest.getValue().isIdle(now))) {
+        return;
+      }
+      iterator.remove();
+      eldest.getValue().cancelRefresh();
+    }
+  }
+
+  private class Entry {
+    private final AtomicReference<AccessToken> token = new AtomicReference<>();
+    private final AtomicReference<SingleSubject<AccessToken>> inFlight = new AtomicReference<>();
+    private final AtomicReference<Disposable> refresh = new AtomicReference<>();
+    private volatile Single<AccessToken> loader;
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    private Single<AccessToken> get(final Single<AccessToken> loader) {
+      this.loader = loader;
+      this.lastAccess = System.currentTimeMillis();
+      while (true) {
+        final AccessToken current = token.get();
+        if (current != null && current.isValid(System.currentTimeMillis(), safetyMargin)) {
+          return Single.just(current);
+        }
+
+        final SingleSubject<AccessToken> pending = inFlight.get();
+        if (pending != null) {
+          return pending;
+        }
+
+        final SingleSubject<AccessToken> subject = SingleSubject.create();
+        if (inFlight.compareAndSet(null, subject)) {
+          load(loader, subject, minRefreshBackoff);
+          return subject;
+        }
+      }
+    }
+
+    private void load(final Single<AccessToken> loader, final SingleSubject<AccessToken> subject,
+        final long backoff) {
+      loader.subscribe(loaded -> {
+        token.set(loaded);
+        inFlight.compareAndSet(subject, null);
+        subject.onSuccess(loaded);
+        scheduleRefresh(loaded);
+      }, throwable -> {
+        inFlight.compareAndSet(subject, null);
+        subject.onError(throwable);
+        final AccessToken current = token.get();
+        if (current != null && current.isValid(System.currentTimeMillis(), 0)) {
+          scheduleRefresh(backoff, Math.min(backoff * 2, maxRefreshBackoff));
+        }
+      });
+    }
+
+    /**
+     * Schedules refresh of the loaded token refreshAhead before its expiration, but not before half
+     * of the time, in which the token can be used, has passed. This way short-lived tokens are not
+     * refreshed in a loop. Tokens with unknown expiration are not refreshed.
+     */
+    private void scheduleRefresh(final AccessToken loaded) {
+      final long remaining = loaded.expiresAt - System.currentTimeMillis();
+      final long usable = remaining - safetyMargin;
+      if (loaded.expiresAt <= 0 || usable <= 0) {
+        return;
+      }
+      final long delay = Math.max(remaining - refreshAhead, usable / 2);
+      scheduleRefresh(Math.max(delay, minRefreshBackoff), minRefreshBackoff);
+    }
+
+    private void scheduleRefresh(final long delay, final long backoff) {
+      if (refreshScheduler == null) {
+        return;
+      }
+      final Disposable task = refreshScheduler.scheduleDirect(() -> refresh(backoff),
+          Math.max(delay, 0), TimeUnit.MILLISECONDS);
+      final Disposable previousTask = refresh.getAndSet(task);
+      if (previousTask != null) {
+        previousTask.dispose();
+      }
+    }
+
+    private boolean isIdle(final long now) {
+      return expireAfterAccess > 0 && now - lastAccess > expireAfterAccess;
+    }
+
+    private void cancelRefresh() {
+      final Disposable task = refresh.getAndSet(null);
+      if (task != null) {
+        task.dispose();
+      }
+    }
+
+    private void refresh(final long backoff) {
+      if (isIdle(System.currentTimeMillis())) {
+        return;
+      }
+      final Single<AccessToken> currentLoader = loader;
+      final SingleSubject<AccessToken> subject = SingleSubject.create();
+      if (currentLoader != null && inFlight.compareAndSet(null, subject)) {
+        load(currentLoader, subject, backoff);
+      }
+    }
+  }
+
+  public static class Builder {
+    private long safetyMargin = TimeUnit.SECONDS.toMillis(DEFAULT_SAFETY_MARGIN_SECONDS);
+    private long refreshAhead = TimeUnit.SECONDS.toMillis(DEFAULT_REFRESH_AHEAD_SECONDS);
+    private long minRefreshBackoff = TimeUnit.SECONDS.toMillis(DEFAULT_MIN_REFRESH_BACKOFF_SECONDS);
+    private long maxRefreshBackoff = TimeUnit.SECONDS.toMillis(DEFAULT_MAX_REFRESH_BACKOFF_SECONDS);
+    private Scheduler refreshScheduler;
+    private int maxSize = Integer.MAX_VALUE;
+    private long expireAfterAccess;
+
+    /**
+     * Sets time before the expiration, when token is no longer reused (60 seconds by default)
+     */
+    public Builder withSafetyMargin(final long safetyMargin, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (safetyMargin < 0) {
+        throw new IllegalArgumentException("safetyMargin < 0");
+      }
+      this.safetyMargin = unit.toMillis(safetyMargin);
+      return this;
+    }
+
+    /**
+     * Enables background refresh of the tokens on the given scheduler
+     */
+    public Builder withRefreshScheduler(final Scheduler refreshScheduler) {
+      Objects.requireNonNull(refreshScheduler, "refreshScheduler == null");
+      this.refreshScheduler = refreshScheduler;
+      return this;
+    }
+
+    /**
+     * Sets time before the expiration, when background refresh starts (5 minutes by default).
+     * It has to be greater than the safety margin. Tokens living shorter are refreshed after half
+     * of the time, in which they can be used.
+     */
+    public Builder withRefreshAhead(final long refreshAhead, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.refreshAhead = unit.toMillis(refreshAhead);
+      return this;
+    }
+
+    /**
+     * Sets bounds of the exponential backoff applied to failed background refresh
+     * (from 1 second up to 1 minute by default)
+     */
+    public Builder withRefreshBackoff(final long min, final long max, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (min <= 0 || max < min) {
+        throw new IllegalArgumentException("min <= 0 || max < min");
+      }
+      this.minRefreshBackoff = unit.toMillis(min);
+      this.maxRefreshBackoff = unit.toMillis(max);
+      return this;
+    }
+
+    /**
+     * Sets maximal number of the keys stored in the cache (unbounded by default)
+     */
+    public Builder withMaxSize(final int maxSize) {
+      if (maxSize <= 0) {
+        throw new IllegalArgumentException("maxSize <= 0");
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets time after which a key which is not used is evicted from the cache and its token is no
+     * longer refreshed (disabled by default)
+     */
+    public Builder withExpireAfterAccess(final long expireAfterAccess, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (expireAfterAccess <= 0) {
+        throw new IllegalArgumentException("expireAfterAccess <= 0");
+      }
+      this.expireAfterAccess = unit.toMillis(expireAfterAccess);
+      return this;
+    }
+
+    public InMemoryTokenCache build() {
+      return new InMemoryTokenCache(this);
+    }
+  }
+}
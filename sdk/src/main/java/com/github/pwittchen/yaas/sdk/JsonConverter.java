@@ -15,14 +15,66 @@
  */
 package com.github.pwittchen.yaas.sdk;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import okio.BufferedSink;
+import okio.BufferedSource;
 
 /**
- * Converter used to convert data from JSON to POJO and backwards
+ * Converter used to convert data from JSON to POJO and backwards. Besides String based methods,
+ * it can read JSON from the stream and write it to the stream without materializing the whole
+ * document as a String. Default implementations of the streaming methods fall back to the String
+ * based ones, so implementations should override them with truly streaming versions.
  */
 public interface JsonConverter {
 
   <T> T fromJson(String json, Type typeOfT);
 
   <T> String toJson(T object, Type typeOfT);
+
+  default <T> T fromJson(final Reader reader, final Type typeOfT) {
+    try {
+      StringBuilder json = new StringBuilder();
+      char[] buffer = new char[8192];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        json.append(buffer, 0, read);
+      }
+      return fromJson(json.toString(), typeOfT);
+    } catch (IOException e) {
+      throw new YaaSException("Couldn't read JSON", e);
+    }
+  }
+
+  default <T> T fromJson(final InputStream inputStream, final Type typeOfT) {
+    return fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), typeOfT);
+  }
+
+  default <T> T fromJson(final BufferedSource source, final Type typeOfT) {
+    return fromJson(source.inputStream(), typeOfT);
+  }
+
+  default <T> void toJson(final T object, final Type typeOfT, final Appendable writer) {
+    try {
+      writer.append(toJson(object, typeOfT));
+    } catch (IOException e) {
+      throw new YaaSException("Couldn't write JSON", e);
+    }
+  }
+
+  default <T> void toJson(final T object, final Type typeOfT, final BufferedSink sink) {
+    Writer writer = new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8);
+    toJson(object, typeOfT, writer);
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new YaaSException("Couldn't write JSON", e);
+    }
+  }
 }
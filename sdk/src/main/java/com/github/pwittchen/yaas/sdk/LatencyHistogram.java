@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies with buckets growing exponentially, with 4 buckets between
+ * the consecutive powers of two of microseconds, so the relative error of percentiles is at most
+ * 25% for latencies from 1 microsecond up to several hours. Recording a value doesn't allocate.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS =
+      SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records duration
+   *
+   * @param durationNanos duration in nanoseconds
+   */
+  public void record(final long durationNanos) {
+    final long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(durationNanos), 0);
+    buckets.incrementAndGet(index(micros));
+    count.increment();
+    sum.add(micros);
+    max.accumulateAndGet(micros, Math::max);
+  }
+
+  /**
+   * @return number of recorded durations
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return mean duration in microseconds
+   */
+  public double getMean() {
+    final long total = count.sum();
+    return total == 0 ? 0 : (double) sum.sum() / total;
+  }
+
+  /**
+   * @return maximal duration in microseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Estimates percentile as the upper bound of the bucket containing it
+   *
+   * @param percentile between 0 and 100, e.g. 99.9
+   * @return duration in microseconds
+   */
+  public long getPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile < 0 || percentile > 100");
+    }
+    long total = 0;
+    final long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  private static int index(final long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    final int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) (micros >>> shift) & (SUB_BUCKETS - 1);
+    return Math.min(SUB_BUCKETS + shift * SUB_BUCKETS + subBucket, BUCKETS - 1);
+  }
+
+  private static long upperBound(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
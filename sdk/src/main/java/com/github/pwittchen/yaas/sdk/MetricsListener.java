@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+/**
+ * Receives events of the requests performed by the YaaS object, which can be recorded as metrics.
+ * Methods are called on the threads performing requests, so they should be fast and thread-safe.
+ * Listener which ignores all the events is used by default, in which case requests are not
+ * measured at all. {@link InMemoryMetrics} records latency histograms and counters in memory.
+ */
+public interface MetricsListener {
+
+  /**
+   * Listener ignoring all the events
+   */
+  MetricsListener NONE = new MetricsListener() {
+  };
+
+  /**
+   * Called when the request to the service is sent, after the Access Token was retrieved
+   *
+   * @param method HTTP method of the request
+   * @param path path relative to the service
+   */
+  default void onRequestStart(final String method, final String path) {
+  }
+
+  /**
+   * Called when the response of the service is received
+   *
+   * @param method HTTP method of the request
+   * @param path path relative to the service
+   * @param code status code of the response
+   * @param durationNanos time from sending the request to receiving the response headers
+   */
+  default void onRequestEnd(final String method, final String path, final int code,
+      final long durationNanos) {
+  }
+
+  /**
+   * Called when the request to the service fails or it's cancelled
+   *
+   * @param method HTTP method of the request
+   * @param path path relative to the service
+   * @param error cause of the failure
+   * @param durationNanos time from sending the request to the failure
+   */
+  default void onRequestFailed(final String method, final String path, final Throwable error,
+      final long durationNanos) {
+  }
+
+  /**
+   * Called when the request gets the Access Token from the token cache without fetching it
+   *
+   * @param key of the token
+   */
+  default void onTokenCacheHit(final TokenKey key) {
+  }
+
+  /**
+   * Called when the request gets the Access Token fetched by another request, which was in
+   * progress when the token was missing in the token cache. Requests are told apart from the
+   * cache hits with {@link TokenCache#getIfPresent(TokenKey)}, so when the token cache doesn't
+   * implement it, all the requests which didn't fetch the token are reported here.
+   *
+   * @param key of the token
+   * @param durationNanos time spent waiting for the token
+   */
+  default void onTokenWaited(final TokenKey key, final long durationNanos) {
+  }
+
+  /**
+   * Called when the Access Token is fetched from the token endpoint, including background refresh
+   *
+   * @param key of the token
+   * @param durationNanos duration of the token request
+   * @param successful false if the token request failed
+   */
+  default void onTokenFetched(final TokenKey key, final long durationNanos,
+      final boolean successful) {
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Path of the endpoint with named parameters, e.g. {@code products/{productId}/variants/{id}},
+ * which is parsed once and expanded many times. Values of the parameters are percent-encoded as
+ * path segments. Integer and long values are appended without conversion to the String, so
+ * expansion allocates only the resulting path.
+ *
+ * <pre>
+ * private static final PathTemplate VARIANT = PathTemplate.compile("products/{productId}/{id}");
+ *
+ * client.get(VARIANT.expand("5a3d", 42));
+ * </pre>
+ */
+public final class PathTemplate {
+
+  private static final char PARAMETER_START = '{';
+  private static final char PARAMETER_END = '}';
+  private static final int EXPECTED_PARAMETER_LENGTH = 16;
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private final String template;
+  private final String[] literals;
+  private final String[] names;
+  private final int literalsLength;
+
+  private PathTemplate(final String template, final List<String> literals,
+      final List<String> names) {
+    this.template = template;
+    this.literals = literals.toArray(new String[literals.size()]);
+    this.names = names.toArray(new String[names.size()]);
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalsLength = length;
+  }
+
+  /**
+   * Parses template of the path
+   *
+   * @param template path relative to the service with parameters in curly braces
+   * @return compiled template
+   */
+  public static PathTemplate compile(final String template) {
+    Objects.requireNonNull(template, "template == null");
+    final List<String> literals = new ArrayList<>();
+    final List<String> names = new ArrayList<>();
+    int position = 0;
+    while (true) {
+      final int start = template.indexOf(PARAMETER_START, position);
+      if (start == -1) {
+        literals.add(template.substring(position));
+        return new PathTemplate(template, literals, names);
+      }
+      final int end = template.indexOf(PARAMETER_END, start);
+      if (end == -1 || end == start + 1) {
+        throw new IllegalArgumentException("Invalid parameter in template " + template);
+      }
+      literals.add(template.substring(position, start));
+      names.add(template.substring(start + 1, end));
+      position = end + 1;
+    }
+  }
+
+  /**
+   * Creates path with the given values of the parameters in the order of their occurrence
+   *
+   * @param values of the parameters
+   * @return path, which can be passed to the Client
+   */
+  public String expand(final Object... values) {
+    Objects.requireNonNull(values, "values == null");
+    if (values.length != names.length) {
+      throw new IllegalArgumentException(
+          "Expected " + names.length + " parameters of " + template + ", got " + values.length);
+    }
+    final StringBuilder path =
+        new StringBuilder(literalsLength + values.length * EXPECTED_PARAMETER_LENGTH);
+    path.append(literals[0]);
+    for (int i = 0; i < values.length; i++) {
+      final Object value = values[i];
+      if (value == null) {
+        throw new NullPointerException(names[i] + " == null");
+      } else if (value instanceof Integer) {
+        path.append((int) value);
+      } else if (value instanceof Long) {
+        path.append((long) value);
+      } else {
+        appendEncoded(path, value.toString());
+      }
+      path.append(literals[i + 1]);
+    }
+    return path.toString();
+  }
+
+  /**
+   * @return names of the parameters in the order of their occurrence
+   */
+  public List<String> getNames() {
+    return Collections.unmodifiableList(Arrays.asList(names));
+  }
+
+  @Override public String toString() {
+    return template;
+  }
+
+  private static void appendEncoded(final StringBuilder path, final String value) {
+    for (int i = 0; i < value.length(); i++) {
+      final char character = value.charAt(i);
+      if (isUnreserved(character)) {
+        path.append(character);
+      } else {
+        appendPercentEncoded(path, value, i);
+        return;
+      }
+    }
+  }
+
+  private static void appendPercentEncoded(final StringBuilder path, final String value,
+      final int from) {
+    final byte[] bytes = value.substring(from).getBytes(StandardCharsets.UTF_8);
+    for (byte b : bytes) {
+      final char character = (char) (b & 0xff);
+      if (isUnreserved(character)) {
+        path.append(character);
+      } else {
+        path.append('%').append(HEX_DIGITS[character >> 4]).append(HEX_DIGITS[character & 0xf]);
+      }
+    }
+  }
+
+  private static boolean isUnreserved(final char character) {
+    return (character >= 'a' && character <= 'z')
+        || (character >= 'A' && character <= 'Z')
+        || (character >= '0' && character <= '9')
+        || character == '-' || character == '.' || character == '_' || character == '~';
+  }
+}
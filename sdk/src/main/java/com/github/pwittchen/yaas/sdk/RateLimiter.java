@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Response;
+
+/**
+ * Limits rate of the requests sent to YaaS, so they stay under the quota of the tenant instead of
+ * being rejected with 429 status. Limiter is a token bucket with the given rate and burst, which
+ * is implemented as GCRA (generic cell rate algorithm) with a single atomic timestamp, so taking a
+ * permit is lock-free. One limiter should be created for each quota, e.g. for each YaaSProject,
+ * and shared by all the YaaS objects of that project.
+ *
+ * When there's no permit available, request either waits for it (up to the maximal wait) or fails
+ * immediately with {@link RequestRejectedException}, depending on the {@link Mode}. Limiter
+ * follows the quota reported by the service: when response contains X-RateLimit-Remaining and
+ * X-RateLimit-Reset headers, remaining requests are spread until the reset (but never faster than
+ * the configured rate) and when there are no more requests left or response has 429 status with
+ * Retry-After header, requests are held back until the reset.
+ */
+public class RateLimiter {
+
+  private static final long DEFAULT_MAX_WAIT_SECONDS = 30;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+  private static final String HEADER_RESET = "X-RateLimit-Reset";
+  private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+  /**
+   * Behavior of the request, when there's no permit available
+   */
+  public enum Mode {
+    WAIT, FAIL_FAST
+  }
+
+  private final long interval;
+  private final int burst;
+  private final Mode mode;
+  private final long maxWait;
+  private final Scheduler scheduler;
+  private final AtomicLong nextPermitAt = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong delayedRequests = new AtomicLong();
+  private final AtomicLong rejectedRequests = new AtomicLong();
+  private volatile long currentInterval;
+
+  /**
+   * Creates limiter waiting for the permit up to 30 seconds
+   *
+   * @param permitsPerSecond sustained rate of the requests
+   * @param burst number of the requests which can be sent at once after a period of inactivity
+   */
+  public RateLimiter(final double permitsPerSecond, final int burst) {
+    this(new Builder().withRate(permitsPerSecond).withBurst(burst));
+  }
+
+  private RateLimiter(final Builder builder) {
+    if (builder.interval <= 0) {
+      throw new IllegalArgumentException("rate is not set");
+    }
+    this.interval = builder.interval;
+    this.burst = builder.burst;
+    this.mode = builder.mode;
+    this.maxWait = builder.maxWait;
+    this.scheduler = builder.scheduler;
+    this.currentInterval = interval;
+  }
+
+  /**
+   * @return current rate of the permits per second, which may be lower than the configured one
+   * after the service reported its quota
+   */
+  public double getRate() {
+    return (double) TimeUnit.SECONDS.toNanos(1) / currentInterval;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return number of the requests which waited for the permit
+   */
+  public long getDelayedRequests() {
+    return delayedRequests.get();
+  }
+
+  /**
+   * @return number of the requests rejected because there was no permit available
+   */
+  public long getRejectedRequests() {
+    return rejectedRequests.get();
+  }
+
+  Single<Response> execute(final Single<Response> call) {
+    return Single.defer(() -> {
+      final long delay = reserve(System.nanoTime());
+      if (delay < 0) {
+        rejectedRequests.incrementAndGet();
+        return Single.error(new RequestRejectedException("Rate limit of "
+            + String.format("%.2f", getRate()) + " requests per second is exceeded"));
+      }
+      final Single<Response> limited = call.doOnSuccess(this::update);
+      if (delay == 0) {
+        return limited;
+      }
+      delayedRequests.incrementAndGet();
+      return Single.timer(delay, TimeUnit.NANOSECONDS, scheduler).flatMap(ignored -> limited);
+    });
+  }
+
+  /**
+   * Takes the permit, which can be used after the returned delay in nanoseconds. When permit is
+   * not available now and limiter fails fast, or it wouldn't be available within the maximal
+   * wait, it's not taken and -1 is returned.
+   */
+  long reserve(final long now) {
+    while (true) {
+      final long step = currentInterval;
+      final long tolerance = step * (burst - 1);
+      final long next = nextPermitAt.get();
+      final long start = next == Long.MIN_VALUE || next - now < 0 ? now : next;
+      final long delay = Math.max(start - now - tolerance, 0);
+      if (delay > 0 && (mode == Mode.FAIL_FAST || delay > maxWait)) {
+        return -1;
+      }
+      if (nextPermitAt.compareAndSet(next, start + step)) {
+        return delay;
+      }
+    }
+  }
+
+  /**
+   * Adjusts limiter to the quota reported by the service in the response headers
+   */
+  void update(final Response response) {
+    final long now = System.nanoTime();
+    if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+      final long retryAfter = RetryPolicy.getRetryAfter(response);
+      if (retryAfter > 0) {
+        holdUntil(now + TimeUnit.MILLISECONDS.toNanos(retryAfter));
+      }
+    }
+    final long remaining = parse(response.header(HEADER_REMAINING));
+    final long reset = getReset(response.header(HEADER_RESET));
+    if (remaining < 0 || reset < 0) {
+      return;
+    }
+    if (remaining == 0) {
+      holdUntil(now + reset);
+    }
+    currentInterval = Math.max(interval, reset / (remaining + 1));
+  }
+
+  private void holdUntil(final long time) {
+    final long until = time + currentInterval * (burst - 1);
+    nextPermitAt.getAndUpdate(next -> next == Long.MIN_VALUE || next - until < 0 ? until : next);
+  }
+
+  /**
+   * @return time until the reset of the quota in nanoseconds, given in the header in seconds or
+   * as epoch seconds, -1 if it's missing
+   */
+  private static long getReset(final String header) {
+    final long reset = parse(header);
+    if (reset < 0) {
+      return -1;
+    }
+    if (reset < EPOCH_SECONDS_THRESHOLD) {
+      return TimeUnit.SECONDS.toNanos(reset);
+    }
+    final long millis = TimeUnit.SECONDS.toMillis(reset) - System.currentTimeMillis();
+    return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+  }
+
+  private static long parse(final String header) {
+    if (header == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(header.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  public static class Builder {
+    private long interval;
+    private int burst = 1;
+    private Mode mode = Mode.WAIT;
+    private long maxWait = TimeUnit.SECONDS.toNanos(DEFAULT_MAX_WAIT_SECONDS);
+    private Scheduler scheduler = Schedulers.computation();
+
+    /**
+     * Sets sustained rate of the requests
+     */
+    public Builder withRate(final double permitsPerSecond) {
+      if (permitsPerSecond <= 0) {
+        throw new IllegalArgumentException("permitsPerSecond <= 0");
+      }
+      this.interval = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1);
+      return this;
+    }
+
+    /**
+     * Sets number of the requests which can be sent at once after a period of inactivity
+     * (1 by default)
+     */
+    public Builder withBurst(final int burst) {
+      if (burst <= 0) {
+        throw new IllegalArgumentException("burst <= 0");
+      }
+      this.burst = burst;
+      return this;
+    }
+
+    /**
+     * Sets behavior of the request when there's no permit available, WAIT by default
+     */
+    public Builder withMode(final Mode mode) {
+      Objects.requireNonNull(mode, "mode == null");
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets maximal time for which request waits for the permit, before it's rejected
+     * (30 seconds by default)
+     */
+    public Builder withMaxWait(final long maxWait, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (maxWait < 0) {
+        throw new IllegalArgumentException("maxWait < 0");
+      }
+      this.maxWait = unit.toNanos(maxWait);
+      return this;
+    }
+
+    /**
+     * Sets scheduler on which requests wait for the permits, Schedulers.computation() by default
+     */
+    public Builder withScheduler(final Scheduler scheduler) {
+      Objects.requireNonNull(scheduler, "scheduler == null");
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    public RateLimiter build() {
+      return new RateLimiter(this);
+    }
+  }
+}
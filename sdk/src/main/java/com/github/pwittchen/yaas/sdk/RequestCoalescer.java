@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Shares one network call between concurrent GET requests to the same URL of the same tenant.
+ * Body of the shared response is read into memory once and each subscriber gets its own copy of
+ * the response with the body, which can be read independently. Call is cancelled when all the
+ * subscribers are disposed. Requests started after the shared call is finished perform a new one.
+ *
+ * Coalescing is opt-in and it's used by GET requests of the YaaS objects created with
+ * {@link YaaS.Builder#withRequestCoalescer(RequestCoalescer)}. The same coalescer can be shared
+ * between many YaaS objects.
+ */
+public class RequestCoalescer {
+
+  private final ConcurrentMap<Object, Single<BufferedResponse>> inFlight =
+      new ConcurrentHashMap<>();
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder requests = new LongAdder();
+
+  /**
+   * @return number of network calls performed
+   */
+  public long getCallCount() {
+    return calls.sum();
+  }
+
+  /**
+   * @return number of requests, including requests which shared the call with others
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * @return number of calls in progress
+   */
+  public int size() {
+    return inFlight.size();
+  }
+
+  Single<Response> get(final Object key, final Single<Response> call) {
+    Objects.requireNonNull(key, "key == null");
+    return Single.defer(() -> {
+      requests.increment();
+      return inFlight.computeIfAbsent(key, k -> share(k, call));
+    }).map(BufferedResponse::copy);
+  }
+
+  private Single<BufferedResponse> share(final Object key, final Single<Response> call) {
+    final AtomicReference<Single<BufferedResponse>> shared = new AtomicReference<>();
+    shared.set(call.doOnSubscribe(disposable -> calls.increment())
+        .map(BufferedResponse::new)
+        .doFinally(() -> inFlight.remove(key, shared.get()))
+        .toObservable()
+        .publish()
+        .refCount()
+        .singleOrError());
+    return shared.get();
+  }
+
+  private static class BufferedResponse {
+    private final Response response;
+    private final MediaType contentType;
+    private final byte[] body;
+
+    private BufferedResponse(final Response response) throws IOException {
+      final ResponseBody responseBody = response.body();
+      this.response = response;
+      this.contentType = responseBody == null ? null : responseBody.contentType();
+      this.body = responseBody == null ? null : responseBody.bytes();
+    }
+
+    private Response copy() {
+      if (body == null) {
+        return response;
+      }
+      return response.newBuilder().body(ResponseBody.create(contentType, body)).build();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+/**
+ * Emitted instead of performing the request, when the client protects itself or the service,
+ * e.g. circuit breaker of the service is open or its concurrency limit is reached. Request was
+ * not sent, so it can be safely retried later.
+ */
+public class RequestRejectedException extends YaaSException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RequestRejectedException(final String message) {
+    super(message);
+  }
+}
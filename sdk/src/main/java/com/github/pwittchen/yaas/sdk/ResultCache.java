@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.subjects.SingleSubject;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps objects decoded from the responses of typed GET requests in memory for the time to live
+ * configured for the path. Only one caller reloads the expired entry. Other callers get the stale
+ * object while it's reloaded or, when serving stale objects is disabled, wait for the same reload,
+ * so expiration of the popular entry doesn't send many requests to the backend at once.
+ *
+ * Memory footprint is bounded by the number of the entries and by their weight, which is the size
+ * of the response body in bytes. When any limit is exceeded, the least recently used entries are
+ * evicted.
+ *
+ * Cache is opt-in and it's used only by typed GET requests of the YaaS object, which was created
+ * with {@link YaaS.Builder#withResultCache(ResultCache)}. Requests returning Single of Response are
+ * never cached. Failed requests are not cached. Failed reload keeps the previous object, which is
+ * reloaded again by the next caller.
+ *
+ * Cached object is not copied, so all the callers of the same path get the same instance. It must
+ * be treated as read-only, otherwise modifications made by one caller are seen by the others.
+ */
+public class ResultCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 60;
+  private static final long DEFAULT_MAX_WEIGHT = 32 * 1024 * 1024;
+  private static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final TreeMap<String, Long> ttlRules;
+  private final long defaultTtl;
+  private final long maxWeight;
+  private final int maxEntries;
+  private final boolean serveStale;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private long weight;
+
+  private ResultCache(final Builder builder) {
+    this.ttlRules = new TreeMap<>(builder.ttlRules);
+    this.defaultTtl = builder.defaultTtl;
+    this.maxWeight = builder.maxWeight;
+    this.maxEntries = builder.maxEntries;
+    this.serveStale = builder.serveStale;
+  }
+
+  /**
+   * @return number of requests served from the cache, including stale objects
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return number of requests, which loaded the object from the backend
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return number of entries evicted because of the weight or entry count limit
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return number of entries currently stored in the cache
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return total weight of the entries currently stored in the cache
+   */
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /**
+   * Removes entries of the paths starting with the given prefix, e.g. after the resource was
+   * modified
+   *
+   * @param pathPrefix prefix of the path relative to the service
+   */
+  public synchronized void invalidate(final String pathPrefix) {
+    Objects.requireNonNull(pathPrefix, "pathPrefix == null");
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      final Entry entry = iterator.next();
+      if (entry.path.startsWith(pathPrefix)) {
+        iterator.remove();
+        release(entry);
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    entries.values().forEach(this::release);
+    entries.clear();
+  }
+
+  /**
+   * Time to live of the path is taken from the rule with the longest matching prefix
+   */
+  long getTtl(final String path) {
+    Map.Entry<String, Long> rule = ttlRules.floorEntry(path);
+    while (rule != null) {
+      if (path.startsWith(rule.getKey())) {
+        return rule.getValue();
+      }
+      rule = ttlRules.lowerEntry(rule.getKey());
+    }
+    return defaultTtl;
+  }
+
+  <T> Single<T> get(final Object key, final String path, final Single<Loaded<T>> loader) {
+    return Single.defer(() -> {
+      final Entry entry = getOrCreate(key, path);
+      @SuppressWarnings("unchecked") final Single<T> result =
+          (Single<T>) entry.get(key, getTtl(path), loader);
+      return result;
+    });
+  }
+
+  /**
+   * Lookup moves the entry to the end of the access order, so eviction starts from the least
+   * recently used entries without sorting them
+   */
+  private synchronized Entry getOrCreate(final Object key, final String path) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(path);
+      entries.put(key, entry);
+      evict();
+    }
+    return entry;
+  }
+
+  private synchronized void store(final Object key, final Entry entry, final Value value) {
+    if (entries.get(key) != entry) {
+      return;
+    }
+    final Value previous = entry.value.getAndSet(value);
+    weight += value.weight - (previous == null ? 0 : previous.weight);
+    evict();
+  }
+
+  private void evict() {
+    final Iterator<Entry> eldest = entries.values().iterator();
+    while (eldest.hasNext() && (weight > maxWeight || entries.size() > maxEntries)) {
+      final Entry entry = eldest.next();
+      eldest.remove();
+      release(entry);
+      evictions.increment();
+    }
+  }
+
+  private synchronized void remove(final Object key, final Entry entry) {
+    if (entries.remove(key, entry)) {
+      release(entry);
+    }
+  }
+
+  private void release(final Entry entry) {
+    final Value previous = entry.value.getAndSet(null);
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+  }
+
+  /**
+   * Object loaded from the backend together with its weight
+   */
+  static class Loaded<T> {
+    final T value;
+    final long weight;
+
+    Loaded(final T value, final long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  private static class Value {
+    private final Object value;
+    private final long weight;
+    private final long expiresAt;
+
+    private Value(final Object value, final long weight, final long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private class Entry {
+    private final String path;
+    private final AtomicReference<Value> value = new AtomicReference<>();
+    private final AtomicReference<SingleSubject<Object>> inFlight = new AtomicReference<>();
+
+    private Entry(final String path) {
+      this.path = path;
+    }
+
+    private Single<?> get(final Object key, final long ttl,
+        final Single<? extends Loaded<?>> loader) {
+      while (true) {
+        final Value current = value.get();
+        if (current != null && System.currentTimeMillis() < current.expiresAt) {
+          hits.increment();
+          return Single.just(current.value);
+        }
+
+        final SingleSubject<Object> pending = inFlight.get();
+        if (pending != null) {
+          if (current != null && serveStale) {
+            hits.increment();
+            return Single.just(current.value);
+          }
+          return pending;
+        }
+
+        final SingleSubject<Object> subject = SingleSubject.create();
+        if (inFlight.compareAndSet(null, subject)) {
+          misses.increment();
+          load(key, ttl, loader, subject);
+          return current != null && serveStale ? Single.just(current.value) : subject;
+        }
+      }
+    }
+
+    private void load(final Object key, final long ttl, final Single<? extends Loaded<?>> loader,
+        final SingleSubject<Object> subject) {
+      loader.subscribe(loaded -> {
+        store(key, this,
+            new Value(loaded.value, loaded.weight, System.currentTimeMillis() + ttl));
+        inFlight.compareAndSet(subject, null);
+        subject.onSuccess(loaded.value);
+      }, throwable -> {
+        if (value.get() == null) {
+          remove(key, this);
+        }
+        inFlight.compareAndSet(subject, null);
+        subject.onError(throwable);
+      });
+    }
+  }
+
+  public static class Builder {
+    private final Map<String, Long> ttlRules = new TreeMap<>();
+    private long defaultTtl = TimeUnit.SECONDS.toMillis(DEFAULT_TTL_SECONDS);
+    private long maxWeight = DEFAULT_MAX_WEIGHT;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private boolean serveStale = true;
+
+    /**
+     * Sets time to live of the paths without more specific rule (60 seconds by default)
+     */
+    public Builder withTtl(final long ttl, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (ttl < 0) {
+        throw new IllegalArgumentException("ttl < 0");
+      }
+      this.defaultTtl = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets time to live of the paths starting with the given prefix. Rule with the longest
+     * matching prefix is applied. Paths with time to live equal to 0 are not cached.
+     */
+    public Builder withTtl(final String pathPrefix, final long ttl, final TimeUnit unit) {
+      Objects.requireNonNull(pathPrefix, "pathPrefix == null");
+      Objects.requireNonNull(unit, "unit == null");
+      if (ttl < 0) {
+        throw new IllegalArgumentException("ttl < 0");
+      }
+      this.ttlRules.put(pathPrefix, unit.toMillis(ttl));
+      return this;
+    }
+
+    /**
+     * Sets maximal total size of the cached response bodies in bytes (32 MB by default)
+     */
+    public Builder withMaxWeight(final long maxWeight) {
+      if (maxWeight <= 0) {
+        throw new IllegalArgumentException("maxWeight <= 0");
+      }
+      this.maxWeight = maxWeight;
+      return this;
+    }
+
+    /**
+     * Sets maximal number of the cached entries (10000 by default)
+     */
+    public Builder withMaxEntries(final int maxEntries) {
+      if (maxEntries <= 0) {
+        throw new IllegalArgumentException("maxEntries <= 0");
+      }
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets whether expired object is returned while it's reloaded (enabled by default). When it's
+     * disabled, callers wait for the single reload.
+     */
+    public Builder withServeStale(final boolean serveStale) {
+      this.serveStale = serveStale;
+      return this;
+    }
+
+    public ResultCache build() {
+      return new ResultCache(this);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits number of the retries to a fixed share of the requests, so retries performed during an
+ * incident can't multiply the load of the failing service. Each request deposits the given ratio
+ * of a retry and each retry withdraws the whole one. Besides that, the given minimal number of the
+ * retries per second is always allowed, so clients sending only a few requests can still retry
+ * them. Unused budget is accumulated up to 10 seconds of the minimal retries (at least 10).
+ *
+ * Budget is lock-free and can be shared by all the RetryPolicy objects of the process.
+ */
+public class RetryBudget {
+
+  private static final double DEFAULT_RATIO = 0.1;
+  private static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+  private static final long UNIT = 1000;
+  private static final long MAX_BALANCE_SECONDS = 10;
+  private static final RetryBudget SHARED =
+      new RetryBudget(DEFAULT_RATIO, DEFAULT_MIN_RETRIES_PER_SECOND);
+
+  private final long deposit;
+  private final long minRetriesPerSecond;
+  private final long maxBalance;
+  private final AtomicLong balance;
+  private final AtomicLong refilledAt = new AtomicLong(System.nanoTime());
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong rejectedRetries = new AtomicLong();
+
+  /**
+   * Creates budget
+   *
+   * @param ratio maximal number of the retries per request, e.g. 0.1 for 10% of the requests
+   * @param minRetriesPerSecond number of the retries allowed regardless of the number of requests
+   */
+  public RetryBudget(final double ratio, final int minRetriesPerSecond) {
+    if (ratio < 0 || minRetriesPerSecond < 0) {
+      throw new IllegalArgumentException("ratio < 0 || minRetriesPerSecond < 0");
+    }
+    this.deposit = (long) (ratio * UNIT);
+    this.minRetriesPerSecond = minRetriesPerSecond;
+    this.maxBalance = Math.max(minRetriesPerSecond, 1) * MAX_BALANCE_SECONDS * UNIT;
+    this.balance = new AtomicLong(minRetriesPerSecond * UNIT);
+  }
+
+  /**
+   * Returns budget shared by the whole process, which allows retrying 10% of the requests and at
+   * least 10 retries per second
+   *
+   * @return shared retry budget
+   */
+  public static RetryBudget shared() {
+    return SHARED;
+  }
+
+  /**
+   * @return number of the retries allowed by the budget
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return number of the retries rejected, because the budget was exhausted
+   */
+  public long getRejectedRetries() {
+    return rejectedRetries.get();
+  }
+
+  void onRequest() {
+    add(deposit);
+  }
+
+  boolean tryAcquire() {
+    refill();
+    while (true) {
+      final long current = balance.get();
+      if (current < UNIT) {
+        rejectedRetries.incrementAndGet();
+        return false;
+      }
+      if (balance.compareAndSet(current, current - UNIT)) {
+        retries.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  private void refill() {
+    final long now = System.nanoTime();
+    final long last = refilledAt.get();
+    final long elapsed = Math.min(now - last, TimeUnit.SECONDS.toNanos(MAX_BALANCE_SECONDS));
+    final long refill = elapsed * minRetriesPerSecond * UNIT / TimeUnit.SECONDS.toNanos(1);
+    if (refill > 0 && refilledAt.compareAndSet(last, now)) {
+      add(refill);
+    }
+  }
+
+  private void add(final long amount) {
+    while (true) {
+      final long current = balance.get();
+      final long updated = Math.min(current + amount, maxBalance);
+      if (current >= maxBalance || balance.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Retries requests failed with IOException or responses with 429 and 503 status. Only idempotent
+ * requests (GET, PUT and DELETE) are retried, while POST requests are retried only when their body
+ * is marked with {@link #idempotent(RequestBody, String)}, so the service can recognize repeated
+ * request by its Idempotency-Key header. Bodies, which can't be sent again, are never retried.
+ *
+ * Delay before the next attempt grows exponentially with full jitter, so clients don't retry at
+ * the same time. When the response contains Retry-After header, its value is used instead, unless
+ * it's longer than the maximal delay, in which case the response is passed to the caller. Each
+ * retry has to be allowed by the {@link RetryBudget}, shared by the whole process by default, so
+ * retries can't multiply the load of the failing service.
+ */
+public class RetryPolicy {
+
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+  private static final long DEFAULT_MAX_BACKOFF_MILLIS = 10000;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int HTTP_UNAVAILABLE = 503;
+  private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+  private final int maxAttempts;
+  private final long initialBackoff;
+  private final long maxBackoff;
+  private final Set<Integer> retryableCodes;
+  private final RetryBudget retryBudget;
+  private final Scheduler scheduler;
+
+  /**
+   * Creates policy performing up to 3 attempts with backoff from 100 milliseconds up to 10
+   * seconds within the shared retry budget
+   */
+  public RetryPolicy() {
+    this(new Builder());
+  }
+
+  private RetryPolicy(final Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoff = builder.initialBackoff;
+    this.maxBackoff = builder.maxBackoff;
+    this.retryableCodes = builder.retryableCodes;
+    this.retryBudget = builder.retryBudget;
+    this.scheduler = builder.scheduler;
+  }
+
+  /**
+   * Marks body of the POST request, which can be retried. The key is sent in Idempotency-Key
+   * header of each attempt, so the service can perform the request only once.
+   *
+   * @param body of the request
+   * @param idempotencyKey unique key of the request, e.g. UUID
+   * @return body sent with the Idempotency-Key header
+   */
+  public static RequestBody idempotent(final RequestBody body, final String idempotencyKey) {
+    Objects.requireNonNull(body, "body == null");
+    Objects.requireNonNull(idempotencyKey, "idempotencyKey == null");
+    return new IdempotentBody(body, idempotencyKey);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public RetryBudget getRetryBudget() {
+    return retryBudget;
+  }
+
+  Single<Response> execute(final Single<Response> call) {
+    return Single.defer(() -> {
+      retryBudget.onRequest();
+      return attempt(call, 1);
+    });
+  }
+
+  /**
+   * Decision about the next attempt is made in the inner Single, so errors of the next attempts
+   * are not handled again by the previous ones
+   */
+  private Single<Response> attempt(final Single<Response> call, final int attempt) {
+    return call.map(response -> onResponse(call, response, attempt))
+        .onErrorReturn(throwable -> onError(call, throwable, attempt))
+        .flatMap(next -> next);
+  }
+
+  private Single<Response> onResponse(final Single<Response> call, final Response response,
+      final int attempt) {
+    if (attempt >= maxAttempts || !retryableCodes.contains(response.code())) {
+      return Single.just(response);
+    }
+    final long retryAfter = getRetryAfter(response);
+    if (retryAfter > maxBackoff || !retryBudget.tryAcquire()) {
+      return Single.just(response);
+    }
+    if (response.body() != null) {
+      response.close();
+    }
+    final long delay = retryAfter >= 0 ? retryAfter : getBackoff(attempt);
+    return Single.timer(delay, TimeUnit.MILLISECONDS, scheduler)
+        .flatMap(ignored -> attempt(call, attempt + 1));
+  }
+
+  private Single<Response> onError(final Single<Response> call, final Throwable throwable,
+      final int attempt) {
+    if (attempt >= maxAttempts || !(throwable instanceof IOException)
+        || !retryBudget.tryAcquire()) {
+      return Single.error(throwable);
+    }
+    return Single.timer(getBackoff(attempt), TimeUnit.MILLISECONDS, scheduler)
+        .flatMap(ignored -> attempt(call, attempt + 1));
+  }
+
+  /**
+   * @return random delay between 0 and the exponential backoff of the attempt
+   */
+  long getBackoff(final int attempt) {
+    final long backoff = Math.min(maxBackoff, initialBackoff * (1L << Math.min(attempt - 1, 30)));
+    return ThreadLocalRandom.current().nextLong(backoff + 1);
+  }
+
+  /**
+   * @return delay from the Retry-After header given in seconds or as HTTP date, -1 if it's missing
+   */
+  static long getRetryAfter(final Response response) {
+    final String retryAfter = response.header(HEADER_RETRY_AFTER);
+    if (retryAfter == null) {
+      return -1;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(Long.parseLong(retryAfter.trim()), 0));
+    } catch (NumberFormatException e) {
+      try {
+        final ZonedDateTime date =
+            ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        return Math.max(date.toInstant().toEpochMilli() - System.currentTimeMillis(), 0);
+      } catch (DateTimeParseException ignored) {
+        return -1;
+      }
+    }
+  }
+
+  static boolean isIdempotent(final RequestBody body) {
+    return body instanceof IdempotentBody;
+  }
+
+  static class IdempotentBody extends RequestBody {
+    final RequestBody body;
+    final String idempotencyKey;
+
+    private IdempotentBody(final RequestBody body, final String idempotencyKey) {
+      this.body = body;
+      this.idempotencyKey = idempotencyKey;
+    }
+
+    @Override public MediaType contentType() {
+      return body.contentType();
+    }
+
+    @Override public long contentLength() throws IOException {
+      return body.contentLength();
+    }
+
+    @Override public void writeTo(final BufferedSink sink) throws IOException {
+      body.writeTo(sink);
+    }
+  }
+
+  public static class Builder {
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF_MILLIS;
+    private Set<Integer> retryableCodes = new HashSet<>();
+    private RetryBudget retryBudget = RetryBudget.shared();
+    private Scheduler scheduler = Schedulers.computation();
+
+    public Builder() {
+      retryableCodes.add(HTTP_TOO_MANY_REQUESTS);
+      retryableCodes.add(HTTP_UNAVAILABLE);
+    }
+
+    /**
+     * Sets maximal number of the attempts including the first one (3 by default)
+     */
+    public Builder withMaxAttempts(final int maxAttempts) {
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("maxAttempts <= 0");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets delay before the second attempt, which is doubled for each next one, and the maximal
+     * delay, which also limits accepted Retry-After (from 100 milliseconds up to 10 seconds by
+     * default)
+     */
+    public Builder withBackoff(final long initial, final long max, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (initial <= 0 || max < initial) {
+        throw new IllegalArgumentException("initial <= 0 || max < initial");
+      }
+      this.initialBackoff = unit.toMillis(initial);
+      this.maxBackoff = unit.toMillis(max);
+      return this;
+    }
+
+    /**
+     * Sets status codes of the responses, which are retried (429 and 503 by default)
+     */
+    public Builder withRetryableCodes(final int... codes) {
+      Objects.requireNonNull(codes, "codes == null");
+      this.retryableCodes = new HashSet<>();
+      for (int code : codes) {
+        retryableCodes.add(code);
+      }
+      return this;
+    }
+
+    /**
+     * Sets budget limiting number of the retries, {@link RetryBudget#shared()} by default
+     */
+    public Builder withRetryBudget(final RetryBudget retryBudget) {
+      Objects.requireNonNull(retryBudget, "retryBudget == null");
+      this.retryBudget = retryBudget;
+      return this;
+    }
+
+    /**
+     * Sets scheduler on which delays are measured, Schedulers.computation() by default
+     */
+    public Builder withScheduler(final Scheduler scheduler) {
+      Objects.requireNonNull(scheduler, "scheduler == null");
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+
+/**
+ * Identifies service of the YaaS project in the {@link CircuitBreaker} and
+ * {@link ConcurrencyLimiter}, so YaaS objects of different clients calling the same service share
+ * its state.
+ */
+public class ServiceKey {
+
+  public final String organization;
+  public final String service;
+  public final String version;
+
+  public ServiceKey(final String organization, final String service, final String version) {
+    this.organization = organization;
+    this.service = service;
+    this.version = version;
+  }
+
+  public static ServiceKey of(final YaaSProject project) {
+    return new ServiceKey(project.organization, project.service, project.version);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final ServiceKey serviceKey = (ServiceKey) o;
+    return Objects.equals(organization, serviceKey.organization)
+        && Objects.equals(service, serviceKey.service)
+        && Objects.equals(version, serviceKey.version);
+  }
+
+  @Override public int hashCode() {
+    return Objects.hash(organization, service, version);
+  }
+
+  @Override public String toString() {
+    return organization + '/' + service + '/' + version;
+  }
+}
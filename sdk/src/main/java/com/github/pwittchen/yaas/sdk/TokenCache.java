@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+
+/**
+ * Cache of the Access Tokens used by the {@link com.github.pwittchen.yaas.sdk.YaaS} in order to
+ * avoid requesting a new token before each call to the microservice
+ */
+public interface TokenCache {
+
+  /**
+   * Returns valid Access Token stored for the given key or subscribes the loader and stores its
+   * result when there is no such token
+   *
+   * @param key identifying the token
+   * @param loader retrieving a new token from the YaaS
+   * @return Single emitting Access Token
+   */
+  Single<AccessToken> get(final TokenKey key, final Single<AccessToken> loader);
+
+  /**
+   * Returns valid Access Token stored for the given key without loading a new one. It lets the
+   * blocking callers skip the Single when the token is cached. Default implementation returns
+   * null, so the token is always read with {@link #get(TokenKey, Single)}.
+   *
+   * @param key identifying the token
+   * @return valid Access Token or null when there is no such token
+   */
+  default AccessToken getIfPresent(final TokenKey key) {
+    return null;
+  }
+
+  /**
+   * Removes token stored for the given key, so the next call will load a new one
+   *
+   * @param key identifying the token
+   */
+  void invalidate(final TokenKey key);
+
+  /**
+   * Removes token stored for the given key only if it's still the given one. It's used when YaaS
+   * rejects the token, so a token refreshed in the meantime is not removed by late callers.
+   *
+   * @param key identifying the token
+   * @param value of the rejected token
+   */
+  default void invalidate(final TokenKey key, final String value) {
+    invalidate(key);
+  }
+}
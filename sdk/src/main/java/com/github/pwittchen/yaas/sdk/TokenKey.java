@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+
+/**
+ * Identifies Access Token in the {@link com.github.pwittchen.yaas.sdk.TokenCache}. Tokens are
+ * issued per endpoint (e.g. zone), client and requested scope, so projects sharing the same client
+ * and scope can share the same token.
+ */
+public class TokenKey {
+
+  public final Zone zone; // null when endpoint is not a Zone
+  public final Endpoint endpoint;
+  public final String clientId;
+  public final String scope;
+
+  public TokenKey(final Zone zone, final String clientId) {
+    this(zone, clientId, null);
+  }
+
+  public TokenKey(final Zone zone, final String clientId, final String scope) {
+    this((Endpoint) zone, clientId, scope);
+  }
+
+  public TokenKey(final Endpoint endpoint, final String clientId, final String scope) {
+    this.zone = endpoint instanceof Zone ? (Zone) endpoint : null;
+    this.endpoint = endpoint;
+    this.clientId = clientId;
+    this.scope = scope;
+  }
+
+  public static TokenKey of(final YaaSProject project) {
+    return new TokenKey(project.endpoint, project.clientId, project.scope);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final TokenKey tokenKey = (TokenKey) o;
+    return Objects.equals(endpoint, tokenKey.endpoint)
+        && Objects.equals(clientId, tokenKey.clientId)
+        && Objects.equals(scope, tokenKey.scope);
+  }
+
+  @Override public int hashCode() {
+    return Objects.hash(endpoint, clientId, scope);
+  }
+
+  @Override public String toString() {
+    return "TokenKey{"
+        + "endpoint=" + endpoint
+        + ", clientId='" + clientId + '\''
+        + ", scope='" + scope + '\''
+        + '}';
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+/**
+ * Endpoint with the base URL given by the user, see {@link Endpoint#of(String)}
+ */
+final class UrlEndpoint implements Endpoint {
+
+  private final String url;
+
+  UrlEndpoint(final String url) {
+    this.url = url;
+  }
+
+  @Override public String getUrl() {
+    return url;
+  }
+
+  @Override public boolean equals(final Object o) {
+    return this == o || (o instanceof UrlEndpoint && url.equals(((UrlEndpoint) o).url));
+  }
+
+  @Override public int hashCode() {
+    return url.hashCode();
+  }
+
+  @Override public String toString() {
+    return "Endpoint{url='" + url + "'}";
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates executors for the {@link BlockingYaaS} requests. This version is used before Java 21 and
+ * runs the tasks on the cached platform threads. On Java 21 and newer, the multi-release JAR of
+ * the SDK provides the version running each task on its own virtual thread.
+ */
+public final class VirtualThreads {
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true when the executors run tasks on the virtual threads
+   */
+  public static boolean isAvailable() {
+    return false;
+  }
+
+  /**
+   * Creates executor running each task on a new virtual thread or, before Java 21, on a cached
+   * daemon thread
+   *
+   * @param name prefix of the names of the threads
+   * @return executor, which should be shut down when it's no longer used
+   */
+  public static ExecutorService newExecutor(final String name) {
+    Objects.requireNonNull(name, "name == null");
+    final AtomicLong counter = new AtomicLong();
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), runnable -> {
+          final Thread thread = new Thread(runnable, name + counter.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
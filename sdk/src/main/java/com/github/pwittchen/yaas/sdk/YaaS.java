@@ -15,19 +15,68 @@
  */
 package com.github.pwittchen.yaas.sdk;
 
+import com.google.gson.reflect.TypeToken;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
 
 /**
  * YaaS class can be used to perform authorized requests to services of the YaaS projects.
  */
 public class YaaS implements Client {
 
-  private final static String URL_FORMAT = "%s/%s/%s/%s";
+  private final static String METHOD_GET = "GET";
+  private final static String METHOD_POST = "POST";
+  private final static String METHOD_PUT = "PUT";
+  private final static String METHOD_DELETE = "DELETE";
+  private final static char PATH_SEPARATOR = '/';
+  private final static int HTTP_UNAUTHORIZED = 401;
+  private final static long MAX_ERROR_BODY_BYTES = 4096;
+  private final static int DEFAULT_PAGE_SIZE = 100;
+  private final static int DEFAULT_PREFETCH_PAGES = 4;
+  private final static String QUERY_SEPARATOR = "?";
+  private final static String PARAMETER_SEPARATOR = "&";
+  private final static String PAGE_NUMBER_PARAMETER = "pageNumber=";
+  private final static String PAGE_SIZE_PARAMETER = "pageSize=";
+  private final static String HEADER_LINK = "Link";
+  private final static String REL_NEXT = "rel=\"next\"";
+  final static JsonConverter DEFAULT_CONVERTER = new GsonConverter();
   private final Authorization authorization;
   private final YaaSProject project;
+  private final TokenCache tokenCache;
+  private final TokenKey tokenKey;
+  private final Single<AccessToken> tokenLoader;
+  private final JsonConverter jsonConverter;
+  private final Scheduler decodeScheduler;
+  private final long deadline;
+  private final ResultCache resultCache;
+  private final RequestCoalescer requestCoalescer;
+  private final String basePath;
+  private final MetricsListener metricsListener;
+  private final ServiceKey serviceKey;
+  private final CircuitBreaker circuitBreaker;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final RetryPolicy retryPolicy;
+  private final RateLimiter rateLimiter;
+  private final HedgingPolicy hedgingPolicy;
 
   /**
    * Create an instance of the YaaS object with provided project details.
@@ -35,7 +84,7 @@ public class YaaS implements Client {
    * @param project represents YaaS Project
    */
   public YaaS(final YaaSProject project) {
-    this(project, new YaaSAuthorization(project.zone));
+    this(new Builder().withProject(project).withDefaults());
   }
 
   /**
@@ -45,22 +94,73 @@ public class YaaS implements Client {
    * @param authorization represents YaaS authorization
    */
   public YaaS(final YaaSProject project, final Authorization authorization) {
-    Objects.requireNonNull(project, "project == null");
-    Objects.requireNonNull(authorization, "authorization == null");
-    this.project = project;
-    this.authorization = authorization;
+    this(new Builder().withProject(project).withAuthorization(authorization).withDefaults());
+  }
+
+  /**
+   * Create an instance of the YaaS object with provided project, authorization and token cache.
+   * Token cache can be shared between many YaaS objects.
+   *
+   * @param project represents YaaS Project
+   * @param authorization represents YaaS authorization
+   * @param tokenCache stores Access Tokens between the requests
+   */
+  public YaaS(final YaaSProject project, final Authorization authorization,
+      final TokenCache tokenCache) {
+    this(new Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withTokenCache(tokenCache)
+        .withDefaults());
+  }
+
+  private YaaS(final Builder builder) {
+    Objects.requireNonNull(builder.project, "project == null");
+    Objects.requireNonNull(builder.authorization, "authorization == null");
+    Objects.requireNonNull(builder.tokenCache, "tokenCache == null");
+    Objects.requireNonNull(builder.jsonConverter, "jsonConverter == null");
+    Objects.requireNonNull(builder.decodeScheduler, "decodeScheduler == null");
+    this.project = builder.project;
+    this.authorization = builder.authorization;
+    this.tokenCache = builder.tokenCache;
+    this.tokenKey = TokenKey.of(project);
+    this.tokenLoader = Single.defer(
+        () -> authorization.getToken(project.clientId, project.clientSecret, project.scope));
+    this.jsonConverter = builder.jsonConverter;
+    this.decodeScheduler = builder.decodeScheduler;
+    this.deadline = builder.deadline;
+    this.resultCache = builder.resultCache;
+    this.requestCoalescer = builder.requestCoalescer;
+    this.metricsListener = builder.metricsListener;
+    this.serviceKey = ServiceKey.of(project);
+    this.circuitBreaker = builder.circuitBreaker;
+    this.concurrencyLimiter = builder.concurrencyLimiter;
+    this.retryPolicy = builder.retryPolicy;
+    this.rateLimiter = builder.rateLimiter;
+    this.hedgingPolicy = builder.hedgingPolicy;
+    this.basePath = new StringBuilder().append(project.organization).append(PATH_SEPARATOR)
+        .append(project.service).append(PATH_SEPARATOR)
+        .append(project.version).append(PATH_SEPARATOR)
+        .toString();
   }
 
   /**
    * Perform an authorized GET request to the endpoint of the defined project through YaaS proxy
    * This method wraps OkHttp3 response via RxJava2 Observable. Response body can be accessed via
-   * string() method performed on the Response object.
+   * string() method performed on the Response object. When request coalescer is set, concurrent
+   * requests to the same path share one network call, while the deadline is applied to each of
+   * them separately.
    *
    * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
    * @return Flowable wrapping response object from OkHttp library
    */
   @Override public Single<Response> get(final String path) {
-    return getAccessToken().flatMap(accessToken -> authorization.get(accessToken, createUrl(path)));
+    final String url = createUrl(path);
+    final Single<Response> response = authorizedWithoutDeadline(METHOD_GET, path, null,
+        accessToken -> authorization.get(accessToken, url));
+    if (requestCoalescer == null) {
+      return withDeadline(response);
+    }
+    return withDeadline(requestCoalescer.get(Arrays.asList(tokenKey, url), response));
   }
 
   /**
@@ -73,8 +173,9 @@ public class YaaS implements Client {
    * @return Flowable wrapping response object from OkHttp library
    */
   @Override public Single<Response> post(final String path, final RequestBody body) {
-    return getAccessToken().flatMap(
-        accessToken -> authorization.post(accessToken, createUrl(path), body));
+    final String url = createUrl(path);
+    return authorized(METHOD_POST, path, body,
+        accessToken -> authorization.post(accessToken, url, body));
   }
 
   /**
@@ -87,8 +188,9 @@ public class YaaS implements Client {
    * @return Flowable wrapping response object from OkHttp library
    */
   @Override public Single<Response> put(final String path, final RequestBody body) {
-    return getAccessToken().flatMap(
-        accessToken -> authorization.put(accessToken, createUrl(path), body));
+    final String url = createUrl(path);
+    return authorized(METHOD_PUT, path, body,
+        accessToken -> authorization.put(accessToken, url, body));
   }
 
   /**
@@ -101,8 +203,9 @@ public class YaaS implements Client {
    * @return Flowable wrapping response object from OkHttp library
    */
   @Override public Single<Response> delete(final String path, final RequestBody body) {
-    return getAccessToken().flatMap(
-        accessToken -> authorization.delete(accessToken, createUrl(path), body));
+    final String url = createUrl(path);
+    return authorized(METHOD_DELETE, path, body,
+        accessToken -> authorization.delete(accessToken, url, body));
   }
 
   /**
@@ -114,15 +217,639 @@ public class YaaS implements Client {
    * @return Flowable wrapping response object from OkHttp library
    */
   @Override public Single<Response> delete(final String path) {
-    return getAccessToken().flatMap(
-        accessToken -> authorization.delete(accessToken, createUrl(path)));
+    final String url = createUrl(path);
+    return authorized(METHOD_DELETE, path, null,
+        accessToken -> authorization.delete(accessToken, url));
+  }
+
+  /**
+   * Perform an authorized GET request to the endpoint of the defined project through YaaS proxy
+   * and converts JSON response body to the object of the given type. Conversion is performed on
+   * the decode scheduler, so it doesn't block network threads. Response body is always closed.
+   * When response status is not successful, YaaSException with status code and body is emitted.
+   * When result cache is set, converted object is reused for the time to live of the path.
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param typeOfT type of the object represented by the response body
+   * @param <T> type of the object represented by the response body
+   * @return Single wrapping converted response body
+   */
+  @Override public <T> Single<T> get(final String path, final Type typeOfT) {
+    if (resultCache == null || resultCache.getTtl(path) == 0) {
+      return decode(get(path), typeOfT);
+    }
+    final Object key = Arrays.asList(tokenKey, createUrl(path), typeOfT);
+    return resultCache.get(key, path, decodeWeighted(get(path), typeOfT));
+  }
+
+  /**
+   * Perform an authorized POST request to the endpoint of the defined project through YaaS proxy
+   * and converts JSON response body to the object of the given type. Conversion is performed on
+   * the decode scheduler, so it doesn't block network threads. Response body is always closed.
+   * When response status is not successful, YaaSException with status code and body is emitted.
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the POST request
+   * @param typeOfT type of the object represented by the response body
+   * @param <T> type of the object represented by the response body
+   * @return Single wrapping converted response body
+   */
+  @Override
+  public <T> Single<T> post(final String path, final RequestBody body, final Type typeOfT) {
+    return decode(post(path, body), typeOfT);
+  }
+
+  /**
+   * Perform an authorized PUT request to the endpoint of the defined project through YaaS proxy
+   * and converts JSON response body to the object of the given type. Conversion is performed on
+   * the decode scheduler, so it doesn't block network threads. Response body is always closed.
+   * When response status is not successful, YaaSException with status code and body is emitted.
+   *
+   * @param path path to the concrete endpoint of the API hidden behind YaaS proxy
+   * @param body of the PUT request
+   * @param typeOfT type of the object represented by the response body
+   * @param <T> type of the object represented by the response body
+   * @return Single wrapping converted response body
+   */
+  @Override
+  public <T> Single<T> put(final String path, final RequestBody body, final Type typeOfT) {
+    return decode(put(path, body), typeOfT);
+  }
+
+  /**
+   * Reads all the items of the YaaS collection endpoint page by page with the default page size
+   * of 100 items and up to 4 pages fetched ahead.
+   *
+   * @param path path to the collection endpoint of the API hidden behind YaaS proxy
+   * @param itemType type of the single item of the collection
+   * @param <T> type of the single item of the collection
+   * @return Flowable emitting items of all the pages
+   * @see #getAll(String, Type, int, int)
+   */
+  public <T> Flowable<T> getAll(final String path, final Type itemType) {
+    return getAll(path, itemType, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_PAGES);
+  }
+
+  /**
+   * Reads all the items of the YaaS collection endpoint page by page using pageNumber and pageSize
+   * query parameters. Next page is requested as long as the response contains Link header with
+   * rel="next" or, when there's no Link header, as long as the page is full. Up to prefetchPages
+   * pages are requested concurrently, so errors of the pages requested after the last one are
+   * ignored, while errors of the other pages are emitted in order. Items are emitted in order as
+   * they're decoded and only when downstream requests them, so memory usage is bounded by the
+   * number of prefetched pages. Cancellation of the subscription cancels pending HTTP calls.
+   *
+   * @param path path to the collection endpoint of the API hidden behind YaaS proxy
+   * @param itemType type of the single item of the collection
+   * @param pageSize number of the items on the single page
+   * @param prefetchPages maximal number of the pages requested at the same time
+   * @param <T> type of the single item of the collection
+   * @return Flowable emitting items of all the pages
+   */
+  public <T> Flowable<T> getAll(final String path, final Type itemType, final int pageSize,
+      final int prefetchPages) {
+    Objects.requireNonNull(path, "path == null");
+    Objects.requireNonNull(itemType, "itemType == null");
+    if (pageSize <= 0 || prefetchPages <= 0) {
+      throw new IllegalArgumentException("pageSize <= 0 || prefetchPages <= 0");
+    }
+    final Type pageType = TypeToken.getParameterized(List.class, itemType).getType();
+    return Flowable.range(1, Integer.MAX_VALUE)
+        .concatMapEager(pageNumber -> this.<T>getPage(path, pageType, pageNumber, pageSize)
+            .onErrorReturn(Page::failed)
+            .toFlowable(), prefetchPages, 1)
+        .takeUntil(page -> !page.hasNext)
+        .map(Page::check)
+        .concatMapIterable(page -> page.items, 1);
+  }
+
+  /**
+   * Creates YaaS object sharing configuration and token cache with this one, which performs each
+   * request within the given deadline. Deadline covers retrieval of the Access Token and the call
+   * to the microservice (including replay after 401). When it's exceeded, request fails with
+   * TimeoutException and underlying HTTP calls are cancelled.
+   *
+   * @param timeout maximal duration of the whole request
+   * @param unit of the timeout
+   * @return YaaS object with the deadline applied to all the requests
+   */
+  @Override public YaaS withDeadline(final long timeout, final TimeUnit unit) {
+    return toBuilder().withDeadline(timeout, unit).build();
+  }
+
+  /**
+   * Retrieves Access Token of the project in advance and stores it in the token cache, so the
+   * first request to the microservice doesn't have to wait for it.
+   *
+   * @return Completable finished when the token is available
+   */
+  public Completable prefetchAccessToken() {
+    return getAccessToken().toCompletable();
   }
 
+  /**
+   * Retrieves Access Tokens of many projects in parallel. Failure of one of them doesn't stop the
+   * others and is reported when all of them are finished.
+   *
+   * @param clients YaaS objects of the projects
+   * @param maxConcurrency maximal number of token requests performed at the same time
+   * @return Completable finished when all the tokens are retrieved
+   */
+  public static Completable prefetchAccessTokens(final Iterable<YaaS> clients,
+      final int maxConcurrency) {
+    Objects.requireNonNull(clients, "clients == null");
+    return Flowable.fromIterable(clients)
+        .flatMapCompletable(YaaS::prefetchAccessToken, true, maxConcurrency);
+  }
+
+  /**
+   * Token taken from the token cache is reported as a hit only when it was there before the
+   * request, so requests joining the token fetch in progress are reported as waiting for it
+   */
   private Single<String> getAccessToken() {
-    return authorization.getAccessToken(project.clientId, project.clientSecret);
+    if (metricsListener == MetricsListener.NONE) {
+      return tokenCache.get(tokenKey, tokenLoader).map(token -> token.value);
+    }
+    return Single.defer(() -> {
+      final boolean cached = tokenCache.getIfPresent(tokenKey) != null;
+      final long subscribedAt = System.nanoTime();
+      final AtomicBoolean fetched = new AtomicBoolean();
+      final Single<AccessToken> measuredLoader = Single.defer(() -> {
+        fetched.set(true);
+        final long start = System.nanoTime();
+        return tokenLoader.doOnSuccess(token -> metricsListener.onTokenFetched(tokenKey,
+            System.nanoTime() - start, true))
+            .doOnError(throwable -> metricsListener.onTokenFetched(tokenKey,
+                System.nanoTime() - start, false));
+      });
+      return tokenCache.get(tokenKey, measuredLoader).map(token -> {
+        if (!fetched.get()) {
+          if (cached) {
+            metricsListener.onTokenCacheHit(tokenKey);
+          } else {
+            metricsListener.onTokenWaited(tokenKey, System.nanoTime() - subscribedAt);
+          }
+        }
+        return token.value;
+      });
+    });
+  }
+
+  /**
+   * Performs request with the cached Access Token. When YaaS proxy rejects the token with 401
+   * status (e.g. it was revoked or expired earlier than expected), the token is invalidated and
+   * request is replayed once with a new token, if its body can be sent again. When retry policy
+   * is set, idempotent requests are retried as a whole within the deadline. When hedging policy
+   * is set, slow GET requests are sent again.
+   */
+  private Single<Response> authorized(final String method, final String path,
+      final RequestBody body, final Function<String, Single<Response>> call) {
+    return withDeadline(authorizedWithoutDeadline(method, path, body, call));
+  }
+
+  /**
+   * Deadline is applied by the caller, so the call shared by the request coalescer isn't bounded
+   * by the deadline of the subscriber, which started it
+   */
+  private Single<Response> authorizedWithoutDeadline(final String method, final String path,
+      final RequestBody body, final Function<String, Single<Response>> call) {
+    final boolean replayable = isReplayable(body);
+    final Function<String, Single<Response>> request =
+        hedgingPolicy != null && METHOD_GET.equals(method)
+            ? accessToken -> hedgingPolicy.execute(protect(method, path, call.apply(accessToken)))
+            : accessToken -> protect(method, path, call.apply(accessToken));
+    Single<Response> response =
+        getAccessToken().flatMap(accessToken -> request.apply(accessToken).flatMap(result -> {
+          if (result.code() != HTTP_UNAUTHORIZED || !replayable) {
+            return Single.just(result);
+          }
+          close(result);
+          tokenCache.invalidate(tokenKey, accessToken);
+          return getAccessToken().flatMap(request);
+        }));
+    if (retryPolicy != null && replayable
+        && (!METHOD_POST.equals(method) || RetryPolicy.isIdempotent(body))) {
+      response = retryPolicy.execute(response);
+    }
+    return response;
+  }
+
+  private Single<Response> withDeadline(final Single<Response> response) {
+    return deadline > 0 ? response.timeout(deadline, TimeUnit.MILLISECONDS) : response;
+  }
+
+  /**
+   * Passes the call to the service through the concurrency limiter, the circuit breaker of the
+   * service and the rate limiter, if they're set. Rejected calls are not sent, so they are not
+   * measured. Open circuit is checked before the rate limiter, so calls rejected by the circuit
+   * breaker don't take permits of the rate limiter.
+   */
+  private Single<Response> protect(final String method, final String path,
+      final Single<Response> call) {
+    Single<Response> result =
+        metricsListener == MetricsListener.NONE ? call : measure(method, path, call);
+    if (concurrencyLimiter != null) {
+      result = concurrencyLimiter.execute(serviceKey, result);
+    }
+    if (circuitBreaker != null) {
+      result = circuitBreaker.execute(serviceKey, result);
+    }
+    if (rateLimiter != null) {
+      result = rateLimiter.execute(result);
+      if (circuitBreaker != null) {
+        result = circuitBreaker.rejectIfOpen(serviceKey, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reports duration of the call to the service, without retrieval of the Access Token
+   */
+  private Single<Response> measure(final String method, final String path,
+      final Single<Response> call) {
+    return Single.defer(() -> {
+      final long start = System.nanoTime();
+      final AtomicBoolean finished = new AtomicBoolean();
+      metricsListener.onRequestStart(method, path);
+      return call.doOnSuccess(response -> {
+        if (finished.compareAndSet(false, true)) {
+          metricsListener.onRequestEnd(method, path, response.code(), System.nanoTime() - start);
+        }
+      }).doOnError(throwable -> {
+        if (finished.compareAndSet(false, true)) {
+          metricsListener.onRequestFailed(method, path, throwable, System.nanoTime() - start);
+        }
+      }).doOnDispose(() -> {
+        if (finished.compareAndSet(false, true)) {
+          metricsListener.onRequestFailed(method, path, new CancellationException(),
+              System.nanoTime() - start);
+        }
+      });
+    });
+  }
+
+  /**
+   * Body can be sent again when it's empty or its length is known upfront. Bodies created with
+   * RequestBody.create(...), FormBody and MultipartBody are replayable, while streaming bodies of
+   * unknown length are not, so the 401 response is passed to the subscriber in such case.
+   */
+  static boolean isReplayable(final RequestBody body) {
+    if (body == null) {
+      return true;
+    }
+    try {
+      return body.contentLength() != -1;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private <T> Single<Page<T>> getPage(final String path, final Type pageType,
+      final int pageNumber, final int pageSize) {
+    final String separator = path.contains(QUERY_SEPARATOR) ? PARAMETER_SEPARATOR : QUERY_SEPARATOR;
+    final String pagePath = path.concat(separator)
+        .concat(PAGE_NUMBER_PARAMETER).concat(String.valueOf(pageNumber))
+        .concat(PARAMETER_SEPARATOR)
+        .concat(PAGE_SIZE_PARAMETER).concat(String.valueOf(pageSize));
+
+    return decodeOn(get(pagePath), result -> {
+      try (ResponseBody body = result.body()) {
+        if (!result.isSuccessful()) {
+          throw createException(result);
+        }
+        final List<T> items =
+            body == null ? null : jsonConverter.fromJson(body.charStream(), pageType);
+        if (items == null) {
+          return new Page<>(Collections.emptyList(), false);
+        }
+        final List<String> links = result.headers(HEADER_LINK);
+        final boolean hasNext = links.isEmpty()
+            ? items.size() >= pageSize
+            : links.stream().anyMatch(link -> link.contains(REL_NEXT));
+        return new Page<>(items, hasNext && !items.isEmpty());
+      }
+    });
+  }
+
+  private <T> Single<T> decode(final Single<Response> response, final Type typeOfT) {
+    return decodeOn(response, result -> convert(result, typeOfT, jsonConverter));
+  }
+
+  /**
+   * Converts the response on the decode scheduler. Response received when the subscriber is
+   * disposed before the conversion starts is closed, so its connection is released.
+   */
+  private <T> Single<T> decodeOn(final Single<Response> response,
+      final Function<Response, T> converter) {
+    return response.flatMap(result -> {
+      final AtomicBoolean consumed = new AtomicBoolean();
+      return Single.fromCallable(() -> {
+        consumed.set(true);
+        return converter.apply(result);
+      }).subscribeOn(decodeScheduler).doOnDispose(() -> {
+        if (consumed.compareAndSet(false, true)) {
+          close(result);
+        }
+      });
+    });
+  }
+
+  /**
+   * Converts JSON body of the successful response to the object of the given type and closes it
+   */
+  static <T> T convert(final Response response, final Type typeOfT,
+      final JsonConverter jsonConverter) throws IOException {
+    try (ResponseBody body = response.body()) {
+      checkBody(response);
+      final T object = jsonConverter.fromJson(body.charStream(), typeOfT);
+      return checkObject(object, response);
+    }
+  }
+
+  /**
+   * Converts response body like {@link #decode(Single, Type)}, while counting bytes of the body
+   * used as the weight of the cached object.
+   */
+  private <T> Single<ResultCache.Loaded<T>> decodeWeighted(final Single<Response> response,
+      final Type typeOfT) {
+    return decodeOn(response, result -> {
+      try (ResponseBody body = result.body()) {
+        checkBody(result);
+        final long[] weight = new long[1];
+        final ForwardingSource counting = new ForwardingSource(body.source()) {
+          @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+            final long read = super.read(sink, byteCount);
+            weight[0] += Math.max(read, 0);
+            return read;
+          }
+        };
+        final T object = jsonConverter.fromJson(Okio.buffer(counting), typeOfT);
+        return new ResultCache.Loaded<>(checkObject(object, result), weight[0]);
+      }
+    });
+  }
+
+  private static void checkBody(final Response result) throws IOException {
+    if (!result.isSuccessful()) {
+      throw createException(result);
+    }
+    if (result.body() == null) {
+      throw new YaaSException("ResponseBody is empty", result.code(), url(result), null);
+    }
+  }
+
+  private static <T> T checkObject(final T object, final Response result) {
+    if (object == null) {
+      throw new YaaSException("ResponseBody is empty", result.code(), url(result), null);
+    }
+    return object;
   }
 
-  private String createUrl(final String path) {
-    return String.format(URL_FORMAT, project.organization, project.service, project.version, path);
+  private static YaaSException createException(final Response response) throws IOException {
+    final String body =
+        response.body() == null ? null : response.peekBody(MAX_ERROR_BODY_BYTES).string();
+    final String message = "Request failed with status " + response.code();
+    return new YaaSException(message, response.code(), url(response), body);
+  }
+
+  private static String url(final Response response) {
+    return response.request().url().toString();
+  }
+
+  static void close(final Response response) {
+    if (response.body() != null) {
+      response.close();
+    }
+  }
+
+  String createUrl(final String path) {
+    return basePath.concat(path);
+  }
+
+  /**
+   * Page of the collection. Failed page is emitted in order like the other pages, so an error of
+   * the page requested ahead after the last one is dropped when reading stops before it.
+   */
+  private static class Page<T> {
+    private final List<T> items;
+    private final boolean hasNext;
+    private final Throwable error;
+
+    private Page(final List<T> items, final boolean hasNext) {
+      this(items, hasNext, null);
+    }
+
+    private Page(final List<T> items, final boolean hasNext, final Throwable error) {
+      this.items = items;
+      this.hasNext = hasNext;
+      this.error = error;
+    }
+
+    private static <T> Page<T> failed(final Throwable error) {
+      return new Page<>(Collections.emptyList(), false, error);
+    }
+
+    private Page<T> check() throws Exception {
+      if (error instanceof Exception) {
+        throw (Exception) error;
+      } else if (error != null) {
+        throw (Error) error;
+      }
+      return this;
+    }
+  }
+
+  private Builder toBuilder() {
+    final Builder builder = new Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withTokenCache(tokenCache)
+        .withJsonConverter(jsonConverter)
+        .withDecodeScheduler(decodeScheduler);
+    builder.deadline = deadline;
+    builder.resultCache = resultCache;
+    builder.requestCoalescer = requestCoalescer;
+    builder.metricsListener = metricsListener;
+    builder.circuitBreaker = circuitBreaker;
+    builder.concurrencyLimiter = concurrencyLimiter;
+    builder.retryPolicy = retryPolicy;
+    builder.rateLimiter = rateLimiter;
+    builder.hedgingPolicy = hedgingPolicy;
+    return builder;
+  }
+
+  public static class Builder {
+    private YaaSProject project;
+    private Authorization authorization;
+    private TokenCache tokenCache;
+    private JsonConverter jsonConverter;
+    private Scheduler decodeScheduler;
+    private long deadline;
+    private ResultCache resultCache;
+    private RequestCoalescer requestCoalescer;
+    private MetricsListener metricsListener = MetricsListener.NONE;
+    private CircuitBreaker circuitBreaker;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private RetryPolicy retryPolicy;
+    private RateLimiter rateLimiter;
+    private HedgingPolicy hedgingPolicy;
+
+    public Builder withProject(final YaaSProject project) {
+      Objects.requireNonNull(project, "project == null");
+      this.project = project;
+      return this;
+    }
+
+    /**
+     * Sets authorization used to retrieve tokens and perform requests, YaaSAuthorization for the
+     * endpoint of the project by default
+     */
+    public Builder withAuthorization(final Authorization authorization) {
+      Objects.requireNonNull(authorization, "authorization == null");
+      this.authorization = authorization;
+      return this;
+    }
+
+    /**
+     * Sets cache of the Access Tokens, which can be shared between many YaaS objects. New
+     * InMemoryTokenCache is created by default.
+     */
+    public Builder withTokenCache(final TokenCache tokenCache) {
+      Objects.requireNonNull(tokenCache, "tokenCache == null");
+      this.tokenCache = tokenCache;
+      return this;
+    }
+
+    /**
+     * Sets converter of the response bodies used by typed requests. Converter of the
+     * YaaSAuthorization or GsonConverter is used by default.
+     */
+    public Builder withJsonConverter(final JsonConverter jsonConverter) {
+      Objects.requireNonNull(jsonConverter, "jsonConverter == null");
+      this.jsonConverter = jsonConverter;
+      return this;
+    }
+
+    /**
+     * Sets scheduler on which typed requests convert response bodies,
+     * Schedulers.computation() by default
+     */
+    public Builder withDecodeScheduler(final Scheduler decodeScheduler) {
+      Objects.requireNonNull(decodeScheduler, "decodeScheduler == null");
+      this.decodeScheduler = decodeScheduler;
+      return this;
+    }
+
+    /**
+     * Sets deadline of each request, see {@link YaaS#withDeadline(long, TimeUnit)}
+     */
+    public Builder withDeadline(final long timeout, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (timeout <= 0) {
+        throw new IllegalArgumentException("timeout <= 0");
+      }
+      this.deadline = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Enables caching of the objects converted by typed GET requests (disabled by default)
+     */
+    public Builder withResultCache(final ResultCache resultCache) {
+      Objects.requireNonNull(resultCache, "resultCache == null");
+      this.resultCache = resultCache;
+      return this;
+    }
+
+    /**
+     * Enables sharing of one network call between concurrent GET requests to the same path
+     * (disabled by default)
+     */
+    public Builder withRequestCoalescer(final RequestCoalescer requestCoalescer) {
+      Objects.requireNonNull(requestCoalescer, "requestCoalescer == null");
+      this.requestCoalescer = requestCoalescer;
+      return this;
+    }
+
+    /**
+     * Sets listener of the request events, e.g. {@link InMemoryMetrics}. Requests are not measured
+     * by default.
+     */
+    public Builder withMetricsListener(final MetricsListener metricsListener) {
+      Objects.requireNonNull(metricsListener, "metricsListener == null");
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    /**
+     * Enables circuit breaker, which rejects requests to the failing service (disabled by
+     * default). It can be shared between YaaS objects of the same service.
+     */
+    public Builder withCircuitBreaker(final CircuitBreaker circuitBreaker) {
+      Objects.requireNonNull(circuitBreaker, "circuitBreaker == null");
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Enables adaptive limit of the concurrent requests to the service (disabled by default).
+     * It can be shared between YaaS objects of the same service.
+     */
+    public Builder withConcurrencyLimiter(final ConcurrencyLimiter concurrencyLimiter) {
+      Objects.requireNonNull(concurrencyLimiter, "concurrencyLimiter == null");
+      this.concurrencyLimiter = concurrencyLimiter;
+      return this;
+    }
+
+    /**
+     * Enables retries of the idempotent requests failed with IOException, 429 or 503 status
+     * (disabled by default)
+     */
+    public Builder withRetryPolicy(final RetryPolicy retryPolicy) {
+      Objects.requireNonNull(retryPolicy, "retryPolicy == null");
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Enables limit of the request rate, which should be shared by all the YaaS objects of the
+     * same project (disabled by default)
+     */
+    public Builder withRateLimiter(final RateLimiter rateLimiter) {
+      Objects.requireNonNull(rateLimiter, "rateLimiter == null");
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * Enables hedging of the slow GET requests, see {@link HedgingPolicy} (disabled by default)
+     */
+    public Builder withHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+      Objects.requireNonNull(hedgingPolicy, "hedgingPolicy == null");
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
+    public YaaS build() {
+      return new YaaS(withDefaults());
+    }
+
+    private Builder withDefaults() {
+      Objects.requireNonNull(project, "project == null");
+      if (authorization == null) {
+        authorization = new YaaSAuthorization(project.endpoint);
+      }
+      if (tokenCache == null) {
+        tokenCache = new InMemoryTokenCache();
+      }
+      if (jsonConverter == null) {
+        jsonConverter = authorization instanceof YaaSAuthorization
+            ? ((YaaSAuthorization) authorization).getJsonConverter() : new GsonConverter();
+      }
+      if (decodeScheduler == null) {
+        decodeScheduler = Schedulers.computation();
+      }
+      return this;
+    }
   }
 }
@@ -17,12 +17,22 @@ package com.github.pwittchen.yaas.sdk;
 
 import io.reactivex.Single;
 import java.io.IOException;
+import java.io.Reader;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.FormBody;
-import okhttp3.OkHttpClient;
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -34,17 +44,33 @@ public class YaaSAuthorization implements Authorization {
   private static final String BODY_CLIENT_SECRET = "client_secret";
   private static final String BODY_GRANT_TYPE = "grant_type";
   private static final String BODY_CLIENT_CREDENTIALS = "client_credentials";
+  private static final String BODY_SCOPE = "scope";
   private static final String CONTENT_TYPE = "Content-Type";
   private static final String CONTENT_TYPE_FORM_URLENCODED = "application/x-www-form-urlencoded";
   private static final String CONTENT_TYPE_APPLICATION_JSON = "application/json";
   private static final String HEADER_AUTHORIZATION = "Authorization";
   private static final String HEADER_BEARER = "Bearer";
+  private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
   private static final String OAUTH2_TOKEN_URL = "hybris/oauth2/v1/token";
   private static final String SPACE = " ";
+  private static final String PATH_SEPARATOR = "/";
+  private static final int MAX_CACHED_HEADERS = 256;
+  private static final int MAX_TOKEN_KEYS = 4096;
+  private static final int HTTP_SERVER_ERROR = 500;
 
-  private final Zone zone;
+  private final Endpoint endpoint;
+  private final EndpointGroup group;
   private final Call.Factory client;
   private final JsonConverter jsonConverter;
+  private final HttpUrl baseUrl;
+  private final HttpUrl tokenUrl;
+  private final ConcurrentMap<String, String> authorizationHeaders = new ConcurrentHashMap<>();
+  private final Map<String, TokenKey> tokenKeys =
+      new LinkedHashMap<String, TokenKey>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(final Map.Entry<String, TokenKey> eldest) {
+          return size() > MAX_TOKEN_KEYS;
+        }
+      };
 
   /**
    * Creates YaaS Authorization object with default Zone.EU
@@ -54,12 +80,23 @@ public class YaaSAuthorization implements Authorization {
   }
 
   /**
-   * Creates YaaS Authorization object
+   * Creates YaaS Authorization object using OkHttpClient shared by all the YaaS Authorization
+   * objects, see {@link YaaSTransport#shared()}
    *
    * @param zone of the microservice (EU or US)
    */
   public YaaSAuthorization(final Zone zone) {
-    this(zone, new OkHttpClient(), new GsonConverter());
+    this((Endpoint) zone);
+  }
+
+  /**
+   * Creates YaaS Authorization object for the given endpoint using OkHttpClient shared by all the
+   * YaaS Authorization objects
+   *
+   * @param endpoint base URL of the YaaS API, e.g. Zone or EndpointGroup
+   */
+  public YaaSAuthorization(final Endpoint endpoint) {
+    this(endpoint, YaaSTransport.shared(), new GsonConverter());
   }
 
   /**
@@ -72,12 +109,32 @@ public class YaaSAuthorization implements Authorization {
    */
   public YaaSAuthorization(final Zone zone, final Call.Factory client,
       final JsonConverter jsonConverter) {
-    Objects.requireNonNull(zone, "zone == null");
+    this((Endpoint) zone, client, jsonConverter);
+  }
+
+  /**
+   * Creates YaaS Authorization object. When endpoint is EndpointGroup, each request is routed to
+   * one of its endpoints.
+   *
+   * @param endpoint base URL of the YaaS API, e.g. Zone or EndpointGroup
+   * @param client Client.Factory interface from OkHttpClient, OkHttpClient class implements it
+   * @param jsonConverter interface for classes performing conversion from JSON to POJO and
+   * backwards
+   */
+  public YaaSAuthorization(final Endpoint endpoint, final Call.Factory client,
+      final JsonConverter jsonConverter) {
+    Objects.requireNonNull(endpoint, "endpoint == null");
     Objects.requireNonNull(client, "client == null");
     Objects.requireNonNull(jsonConverter, "jsonConverter == null");
-    this.zone = zone;
+    this.endpoint = endpoint;
+    this.group = endpoint instanceof EndpointGroup ? (EndpointGroup) endpoint : null;
     this.client = client;
     this.jsonConverter = jsonConverter;
+    this.baseUrl = HttpUrl.parse(endpoint.getUrl());
+    if (baseUrl == null) {
+      throw new IllegalArgumentException("unexpected url: " + endpoint.getUrl());
+    }
+    this.tokenUrl = baseUrl.resolve(OAUTH2_TOKEN_URL);
   }
 
   /**
@@ -90,69 +147,138 @@ public class YaaSAuthorization implements Authorization {
    */
   @Override
   public Single<String> getAccessToken(final String clientId, final String clientSecret) {
-    final FormBody requestBody = createAccessTokenRequestBody(clientId, clientSecret);
+    return getToken(clientId, clientSecret).map(token -> token.value);
+  }
+
+  /**
+   * Reads Access Token from the YaaS together with its expiration time calculated from the
+   * expires_in field of the authorization response.
+   *
+   * @param clientId id of the client read from YaaS Builder web app
+   * @param clientSecret secret value of the client read form YaaS Builder web app
+   * @return Single wrapping Access Token
+   */
+  @Override
+  public Single<AccessToken> getToken(final String clientId, final String clientSecret) {
+    return getToken(clientId, clientSecret, null);
+  }
+
+  /**
+   * Reads Access Token for the requested scope from the YaaS together with its expiration time
+   *
+   * @param clientId id of the client read from YaaS Builder web app
+   * @param clientSecret secret value of the client read form YaaS Builder web app
+   * @param scope requested scope of the token or null for the default scope
+   * @return Single wrapping Access Token
+   */
+  @Override
+  public Single<AccessToken> getToken(final String clientId, final String clientSecret,
+      final String scope) {
+    final FormBody requestBody = createAccessTokenRequestBody(clientId, clientSecret, scope);
     final Request request = createAccessTokenRequest(requestBody);
 
-    return Single.create(
-        emitter -> client.newCall(request).enqueue(new Callback() {
-          @Override public void onFailure(Call call, IOException e) {
-            emitter.onError(e);
-          }
+    return Single.defer(() -> {
+      final long requestedAt = System.currentTimeMillis();
+      return request(request).map(response -> readAccessToken(response, requestedAt))
+          .doOnSuccess(token -> register(token, clientId, scope));
+    });
+  }
 
-          @Override public void onResponse(final Call call, final Response response) {
-            final Optional<ResponseBody> body = readResponseBody(response.body());
-            if (body.isPresent()) {
-              final Optional<String> accessToken = retrieveAccessToken(body.get());
-              if (accessToken.isPresent()) {
-                emitter.onSuccess(accessToken.get());
-              } else {
-                emitter.onError(new YaaSException("Access Token is empty"));
-              }
-            } else {
-              emitter.onError(new YaaSException("ResponseBody is empty"));
-            }
-          }
-        }));
+  /**
+   * Reads Access Token on the calling thread with Call.execute(). It's used by the
+   * {@link BlockingYaaS}.
+   */
+  AccessToken fetchToken(final String clientId, final String clientSecret, final String scope)
+      throws IOException {
+    final Request request =
+        createAccessTokenRequest(createAccessTokenRequestBody(clientId, clientSecret, scope));
+    final long requestedAt = System.currentTimeMillis();
+    return register(readAccessToken(execute(request), requestedAt), clientId, scope);
+  }
+
+  /**
+   * Remembers client and scope of the token, so requests made with it are tagged with its
+   * TokenKey, e.g. for partitioning of the {@link ConditionalCache}. Keys of up to 4096 tokens
+   * are kept and the least recently used ones are forgotten first, so tokens in use keep their
+   * keys.
+   */
+  private AccessToken register(final AccessToken token, final String clientId,
+      final String scope) {
+    final TokenKey tokenKey = new TokenKey(endpoint, clientId, scope);
+    synchronized (tokenKeys) {
+      tokenKeys.put(token.value, tokenKey);
+    }
+    return token;
+  }
+
+  private AccessToken readAccessToken(final Response response, final long requestedAt) {
+    final Optional<ResponseBody> body = readResponseBody(response.body());
+    if (!body.isPresent()) {
+      throw new YaaSException("ResponseBody is empty");
+    }
+    final Optional<YaaSAuthorizationResponse> authorizationResponse;
+    try {
+      authorizationResponse = retrieveAuthorizationResponse(body.get());
+    } catch (RuntimeException e) {
+      throw new YaaSException("Couldn't read Access Token", e);
+    }
+    if (!authorizationResponse.isPresent()) {
+      throw new YaaSException("Access Token is empty");
+    }
+    return createAccessToken(authorizationResponse.get(), requestedAt);
   }
 
   protected Request createAccessTokenRequest(final RequestBody requestBody) {
-    return new Request.Builder().url(zone.getUrl().concat(OAUTH2_TOKEN_URL))
+    return new Request.Builder().url(group == null ? tokenUrl : createUrl(OAUTH2_TOKEN_URL))
         .addHeader(CONTENT_TYPE, CONTENT_TYPE_FORM_URLENCODED)
-        .post(requestBody)
+        .post(GzipRequestInterceptor.uncompressed(requestBody))
         .build();
   }
 
   protected FormBody createAccessTokenRequestBody(final String clientId,
       final String clientSecret) {
-    return new FormBody.Builder().add(BODY_GRANT_TYPE, BODY_CLIENT_CREDENTIALS)
-        .add(BODY_CLIENT_ID, clientId)
-        .add(BODY_CLIENT_SECRET, clientSecret)
-        .build();
+    return createAccessTokenRequestBody(clientId, clientSecret, null);
+  }
+
+  protected FormBody createAccessTokenRequestBody(final String clientId,
+      final String clientSecret, final String scope) {
+    final FormBody.Builder builder =
+        new FormBody.Builder().add(BODY_GRANT_TYPE, BODY_CLIENT_CREDENTIALS)
+            .add(BODY_CLIENT_ID, clientId)
+            .add(BODY_CLIENT_SECRET, clientSecret);
+
+    if (scope != null) {
+      builder.add(BODY_SCOPE, scope);
+    }
+
+    return builder.build();
   }
 
   protected Optional<String> retrieveAccessToken(final ResponseBody responseBody) {
-    Optional<String> body = tryToReadResponseBodyString(responseBody);
+    return retrieveAuthorizationResponse(responseBody).map(response -> response.accessToken);
+  }
 
-    if (!body.isPresent()) {
+  protected Optional<YaaSAuthorizationResponse> retrieveAuthorizationResponse(
+      final ResponseBody responseBody) {
+    final YaaSAuthorizationResponse response;
+
+    try (Reader reader = responseBody.charStream()) {
+      response = jsonConverter.fromJson(reader, YaaSAuthorizationResponse.class);
+    } catch (IOException e) {
       return Optional.empty();
     }
 
-    YaaSAuthorizationResponse response =
-        jsonConverter.fromJson(body.get(), YaaSAuthorizationResponse.class);
-
-    if (response != null && !response.accessToken.isEmpty()) {
-      return Optional.of(response.accessToken);
+    if (response != null && response.accessToken != null && !response.accessToken.isEmpty()) {
+      return Optional.of(response);
     }
 
     return Optional.empty();
   }
 
-  private Optional<String> tryToReadResponseBodyString(final ResponseBody body) {
-    try {
-      return Optional.of(body.string());
-    } catch (IOException e) {
-      return Optional.empty();
-    }
+  protected AccessToken createAccessToken(final YaaSAuthorizationResponse response,
+      final long requestedAt) {
+    final long expiresAt = requestedAt + TimeUnit.SECONDS.toMillis(response.expiresIn);
+    return new AccessToken(response.accessToken, expiresAt);
   }
 
   private Optional<ResponseBody> readResponseBody(final ResponseBody body) {
@@ -224,16 +350,143 @@ public class YaaSAuthorization implements Authorization {
     return request(createAuthorizedDeleteRequest(bearer, path));
   }
 
+  /**
+   * Performs HTTP request. Disposing the subscription before the response arrives cancels the
+   * underlying call, so the connection and the dispatcher slot are released immediately. Once the
+   * response is emitted, the call is no longer cancelled, so its body can still be read.
+   *
+   * @param request to be performed
+   * @return Single with the Response
+   */
   protected Single<Response> request(final Request request) {
-    return Single.create(emitter -> client.newCall(request).enqueue(new Callback() {
-      @Override public void onFailure(Call call, IOException e) {
-        emitter.onError(e);
+    return group == null ? call(request) : route(request);
+  }
+
+  /**
+   * Reports latency and result of the request to the endpoint of the group, which served it.
+   * When connection to the endpoint can't be established, so the request wasn't sent, it's sent
+   * once to another endpoint of the group.
+   */
+  private Single<Response> route(final Request request) {
+    return Single.defer(() -> {
+      final EndpointGroup.Member member = group.find(request.url());
+      if (member == null) {
+        return call(request);
       }
+      return measure(member, call(request)).onErrorResumeNext(throwable -> {
+        final EndpointGroup.Member other = group.select(member);
+        if (!isConnectFailure(throwable) || other == member) {
+          return Single.error(throwable);
+        }
+        return measure(other, call(rebase(request, member, other)));
+      });
+    });
+  }
+
+  private static Single<Response> measure(final EndpointGroup.Member member,
+      final Single<Response> call) {
+    return Single.defer(() -> {
+      final long start = System.nanoTime();
+      final AtomicBoolean finished = new AtomicBoolean();
+      member.onStart();
+      return call.doOnSuccess(response -> {
+        if (finished.compareAndSet(false, true)) {
+          member.onEnd(System.nanoTime() - start, response.code() >= HTTP_SERVER_ERROR);
+        }
+      }).doOnError(throwable -> {
+        if (finished.compareAndSet(false, true)) {
+          member.onEnd(System.nanoTime() - start, true);
+        }
+      }).doOnDispose(() -> {
+        if (finished.compareAndSet(false, true)) {
+          member.onCancel();
+        }
+      });
+    });
+  }
 
-      @Override public void onResponse(Call call, Response response) throws IOException {
-        emitter.onSuccess(response);
+  private static boolean isConnectFailure(final Throwable throwable) {
+    return throwable instanceof ConnectException
+        || throwable instanceof NoRouteToHostException
+        || throwable instanceof UnknownHostException;
+  }
+
+  private static Request rebase(final Request request, final EndpointGroup.Member from,
+      final EndpointGroup.Member to) {
+    final String url = request.url().toString();
+    final String fromUrl = from.baseUrl.toString();
+    if (!url.startsWith(fromUrl)) {
+      return request;
+    }
+    return request.newBuilder().url(to.baseUrl.toString().concat(url.substring(fromUrl.length())))
+        .build();
+  }
+
+  /**
+   * Performs HTTP request on the calling thread with Call.execute(), without wrapping it in the
+   * Single. Requests to the EndpointGroup are measured and fail over like in
+   * {@link #request(Request)}.
+   */
+  Response execute(final Request request) throws IOException {
+    final EndpointGroup.Member member = group == null ? null : group.find(request.url());
+    if (member == null) {
+      return client.newCall(request).execute();
+    }
+    try {
+      return execute(member, request);
+    } catch (IOException e) {
+      final EndpointGroup.Member other = group.select(member);
+      if (!isConnectFailure(e) || other == member) {
+        throw e;
       }
-    }));
+      return execute(other, rebase(request, member, other));
+    }
+  }
+
+  private Response execute(final EndpointGroup.Member member, final Request request)
+      throws IOException {
+    final long start = System.nanoTime();
+    boolean failed = true;
+    member.onStart();
+    try {
+      final Response response = client.newCall(request).execute();
+      failed = response.code() >= HTTP_SERVER_ERROR;
+      return response;
+    } finally {
+      member.onEnd(System.nanoTime() - start, failed);
+    }
+  }
+
+  /**
+   * Response is marked as delivered only when it reaches the subscriber, so the response dropped
+   * by the emitter disposed in the meantime is closed.
+   */
+  private Single<Response> call(final Request request) {
+    return Single.defer(() -> {
+      final AtomicBoolean delivered = new AtomicBoolean();
+      return Single.<Response>create(emitter -> {
+        final Call serviceCall = client.newCall(request);
+        emitter.setCancellable(() -> {
+          if (!delivered.get()) {
+            serviceCall.cancel();
+          }
+        });
+        serviceCall.enqueue(new Callback() {
+          @Override public void onFailure(Call call, IOException e) {
+            if (!emitter.isDisposed()) {
+              emitter.onError(e);
+            }
+          }
+
+          @Override public void onResponse(Call call, Response response) throws IOException {
+            emitter.onSuccess(response);
+            if (!delivered.get()) {
+              response.close();
+            }
+          }
+        });
+      }).doOnSuccess(response -> delivered.set(true));
+    });
   }
 
   protected Request createAuthorizedGetRequest(final String bearer, final String path) {
@@ -242,31 +495,107 @@ public class YaaSAuthorization implements Authorization {
 
   protected Request createAuthorizedPostRequest(final String bearer, final String path,
       final RequestBody body) {
-    return createRequestBuilder(bearer, path).post(body).build();
+    return createRequestBuilder(bearer, path, body).post(unwrap(body)).build();
   }
 
   protected Request createAuthorizedPutRequest(final String bearer, final String path,
       final RequestBody body) {
-    return createRequestBuilder(bearer, path).put(body).build();
+    return createRequestBuilder(bearer, path, body).put(unwrap(body)).build();
   }
 
   protected Request createAuthorizedDeleteRequest(final String bearer, final String path,
       final RequestBody body) {
-    return createRequestBuilder(bearer, path).delete(body).build();
+    return createRequestBuilder(bearer, path, body).delete(unwrap(body)).build();
   }
 
   protected Request createAuthorizedDeleteRequest(final String bearer, final String path) {
     return createRequestBuilder(bearer, path).delete().build();
   }
 
+  /**
+   * Request made with the token retrieved by this authorization is tagged with its TokenKey
+   */
   private Request.Builder createRequestBuilder(final String bearer, final String path) {
-    return new Request.Builder().url((zone.getUrl().concat(path)))
+    final Request.Builder builder = new Request.Builder().url(createUrl(path))
         .addHeader(CONTENT_TYPE, CONTENT_TYPE_APPLICATION_JSON)
-        .addHeader(HEADER_AUTHORIZATION, HEADER_BEARER.concat(SPACE).concat(bearer));
+        .addHeader(HEADER_AUTHORIZATION, createAuthorizationHeader(bearer));
+    final TokenKey tokenKey;
+    synchronized (tokenKeys) {
+      tokenKey = tokenKeys.get(bearer);
+    }
+    return tokenKey == null ? builder : builder.tag(tokenKey);
+  }
+
+  /**
+   * Adds Idempotency-Key header of the body marked with {@link RetryPolicy#idempotent(
+   * RequestBody, String)}
+   */
+  private Request.Builder createRequestBuilder(final String bearer, final String path,
+      final RequestBody body) {
+    final Request.Builder builder = createRequestBuilder(bearer, path);
+    if (RetryPolicy.isIdempotent(body)) {
+      builder.header(HEADER_IDEMPOTENCY_KEY, ((RetryPolicy.IdempotentBody) body).idempotencyKey);
+    }
+    return builder;
+  }
+
+  private static RequestBody unwrap(final RequestBody body) {
+    return RetryPolicy.isIdempotent(body) ? ((RetryPolicy.IdempotentBody) body).body : body;
+  }
+
+  /**
+   * Resolves path against URL of the endpoint parsed once, so only the path and query are parsed
+   * for each request. Paths, which look like absolute URLs (e.g. with colon in the first segment),
+   * are appended to the URL of the endpoint and parsed as a whole. Endpoint of the group is chosen
+   * for each request.
+   */
+  private HttpUrl createUrl(final String path) {
+    return createUrl(group == null ? baseUrl : group.select().baseUrl, path);
   }
 
+  private static HttpUrl createUrl(final HttpUrl base, final String path) {
+    final HttpUrl url = path.startsWith(PATH_SEPARATOR) ? null : base.resolve(path);
+    if (url != null && !url.host().equals(base.host())) {
+      return parseUrl(base, path);
+    }
+    return url != null ? url : parseUrl(base, path);
+  }
+
+  private static HttpUrl parseUrl(final HttpUrl base, final String path) {
+    final String fullUrl = base.toString().concat(path);
+    final HttpUrl url = HttpUrl.parse(fullUrl);
+    if (url == null) {
+      throw new IllegalArgumentException("unexpected url: " + fullUrl);
+    }
+    return url;
+  }
+
+  /**
+   * Value of the Authorization header is created once for each token. The same tokens are reused
+   * by many requests until they expire, so only a few recent values are kept.
+   */
+  private String createAuthorizationHeader(final String bearer) {
+    final String header = authorizationHeaders.get(bearer);
+    if (header != null) {
+      return header;
+    }
+    if (authorizationHeaders.size() >= MAX_CACHED_HEADERS) {
+      authorizationHeaders.clear();
+    }
+    final String newHeader = HEADER_BEARER.concat(SPACE).concat(bearer);
+    authorizationHeaders.put(bearer, newHeader);
+    return newHeader;
+  }
+
+  /**
+   * @return zone of the endpoint or null when the endpoint is not a Zone
+   */
   public Zone getZone() {
-    return zone;
+    return endpoint instanceof Zone ? (Zone) endpoint : null;
+  }
+
+  public Endpoint getEndpoint() {
+    return endpoint;
   }
 
   public Call.Factory getClient() {
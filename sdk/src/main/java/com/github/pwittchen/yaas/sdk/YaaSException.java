@@ -16,11 +16,46 @@
 package com.github.pwittchen.yaas.sdk;
 
 /**
- * Represents an exception thrown during call to the YaaS
+ * Represents an exception thrown during call to the YaaS. When it's caused by the unsuccessful
+ * response, it contains its status code, url and the beginning of the body.
  */
 public class YaaSException extends RuntimeException {
 
+  private final int code;
+  private final String url;
+  private final String body;
+
   public YaaSException(final String message) {
+    this(message, 0, null, null);
+  }
+
+  public YaaSException(final String message, final Throwable cause) {
+    super(message, cause);
+    this.code = 0;
+    this.url = null;
+    this.body = null;
+  }
+
+  public YaaSException(final String message, final int code, final String url,
+      final String body) {
     super(message);
+    this.code = code;
+    this.url = url;
+    this.body = body;
+  }
+
+  /**
+   * @return HTTP status code of the response or 0 if exception is not caused by the response
+   */
+  public int getCode() {
+    return code;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public String getBody() {
+    return body;
   }
 }
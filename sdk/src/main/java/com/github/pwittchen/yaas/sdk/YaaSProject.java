@@ -16,37 +16,63 @@
 package com.github.pwittchen.yaas.sdk;
 
 /**
- * Represents YaaS project, which is defined in the YaaS Builder web app
+ * Represents YaaS project, which is defined in the YaaS Builder web app. Project is served by the
+ * endpoint, which is either one of the public zones or any other {@link Endpoint}.
  */
 public class YaaSProject {
 
-  public final Zone zone;
+  public final Zone zone; // null when endpoint is not a Zone
+  public final Endpoint endpoint;
   public final String organization;
   public final String service; // AKA tenant or Project Identifier
   public final String version;
   public final String clientId;
   public final String clientSecret;
+  public final String scope; // optional, e.g. hybris.tenant=mytenant
 
   public YaaSProject(Zone zone, String organization, String service, String version,
       String clientId, String clientSecret) {
-    this.zone = zone;
+    this(zone, organization, service, version, clientId, clientSecret, null);
+  }
+
+  public YaaSProject(Zone zone, String organization, String service, String version,
+      String clientId, String clientSecret, String scope) {
+    this((Endpoint) zone, organization, service, version, clientId, clientSecret, scope);
+  }
+
+  public YaaSProject(Endpoint endpoint, String organization, String service, String version,
+      String clientId, String clientSecret) {
+    this(endpoint, organization, service, version, clientId, clientSecret, null);
+  }
+
+  public YaaSProject(Endpoint endpoint, String organization, String service, String version,
+      String clientId, String clientSecret, String scope) {
+    this.zone = endpoint instanceof Zone ? (Zone) endpoint : null;
+    this.endpoint = endpoint;
     this.organization = organization;
     this.service = service;
     this.version = version;
     this.clientId = clientId;
     this.clientSecret = clientSecret;
+    this.scope = scope;
   }
 
   public static class Builder {
-    private Zone zone;
+    private Endpoint endpoint;
     private String organization;
     private String service;
     private String version;
     private String clientId;
     private String clientSecret;
+    private String scope;
 
     public Builder withZone(final Zone zone) {
-      this.zone = zone;
+      this.endpoint = zone;
+      return this;
+    }
+
+    public Builder withEndpoint(final Endpoint endpoint) {
+      this.endpoint = endpoint;
       return this;
     }
 
@@ -75,8 +101,14 @@ public class YaaSProject {
       return this;
     }
 
+    public Builder withScope(final String scope) {
+      this.scope = scope;
+      return this;
+    }
+
     public YaaSProject build() {
-      return new YaaSProject(zone, organization, service, version, clientId, clientSecret);
+      return new YaaSProject(endpoint, organization, service, version, clientId, clientSecret,
+          scope);
     }
   }
 }
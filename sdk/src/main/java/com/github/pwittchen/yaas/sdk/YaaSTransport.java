@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Creates OkHttpClient used to perform HTTP requests to the YaaS. All the requests to the zone go
+ * to the same host, so one client with its connection pool, dispatcher and TLS session cache
+ * should be shared by all YaaSAuthorization objects. Shared client with defaults suitable for
+ * server workloads is returned by {@link #shared()} and used by default.
+ */
+public final class YaaSTransport {
+
+  private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+  private static final long DEFAULT_KEEP_ALIVE_MINUTES = 5;
+  private static final int DEFAULT_MAX_REQUESTS = 256;
+  private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 128;
+  private static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+  private static final long DEFAULT_READ_TIMEOUT_SECONDS = 30;
+  private static final long DEFAULT_WRITE_TIMEOUT_SECONDS = 30;
+
+  private YaaSTransport() {
+  }
+
+  /**
+   * @return OkHttpClient with default configuration shared by all the YaaSAuthorization objects
+   * created without explicitly provided client
+   */
+  public static OkHttpClient shared() {
+    return SharedClientHolder.CLIENT;
+  }
+
+  /**
+   * @return OkHttpClient sharing the connection pool and dispatcher with {@link #shared()}, which
+   * speaks only HTTP/1.1. It's used by the BlockingYaaS objects created without explicitly provided
+   * authorization, because OkHttp waits for the response headers of HTTP/2 streams in the
+   * synchronized method, which pins virtual threads to their carrier threads.
+   */
+  public static OkHttpClient sharedHttp1() {
+    return SharedHttp1ClientHolder.CLIENT;
+  }
+
+  private static class SharedClientHolder {
+    private static final OkHttpClient CLIENT = new Builder().build();
+  }
+
+  private static class SharedHttp1ClientHolder {
+    private static final OkHttpClient CLIENT = shared().newBuilder()
+        .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+        .build();
+  }
+
+  public static class Builder {
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long keepAlive = TimeUnit.MINUTES.toMillis(DEFAULT_KEEP_ALIVE_MINUTES);
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private boolean http2 = true;
+    private long connectTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_CONNECT_TIMEOUT_SECONDS);
+    private long readTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_READ_TIMEOUT_SECONDS);
+    private long writeTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_WRITE_TIMEOUT_SECONDS);
+    private ConditionalCache cache;
+    private GzipRequestInterceptor gzip;
+
+    /**
+     * Sets maximal number of idle connections kept in the pool (32 by default)
+     */
+    public Builder withMaxIdleConnections(final int maxIdleConnections) {
+      if (maxIdleConnections < 0) {
+        throw new IllegalArgumentException("maxIdleConnections < 0");
+      }
+      this.maxIdleConnections = maxIdleConnections;
+      return this;
+    }
+
+    /**
+     * Sets time after which idle connection is closed (5 minutes by default)
+     */
+    public Builder withKeepAlive(final long keepAlive, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      if (keepAlive <= 0) {
+        throw new IllegalArgumentException("keepAlive <= 0");
+      }
+      this.keepAlive = unit.toMillis(keepAlive);
+      return this;
+    }
+
+    /**
+     * Sets maximal number of requests executed concurrently by the dispatcher (256 by default)
+     */
+    public Builder withMaxRequests(final int maxRequests) {
+      if (maxRequests <= 0) {
+        throw new IllegalArgumentException("maxRequests <= 0");
+      }
+      this.maxRequests = maxRequests;
+      return this;
+    }
+
+    /**
+     * Sets maximal number of requests executed concurrently to the single host (128 by default).
+     * All requests to the zone go to the same host, so it limits concurrency of the whole zone.
+     */
+    public Builder withMaxRequestsPerHost(final int maxRequestsPerHost) {
+      if (maxRequestsPerHost <= 0) {
+        throw new IllegalArgumentException("maxRequestsPerHost <= 0");
+      }
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /**
+     * Enables or disables HTTP/2, which multiplexes concurrent requests over one connection
+     * (enabled by default, used when server supports it)
+     */
+    public Builder withHttp2(final boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    public Builder withConnectTimeout(final long connectTimeout, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.connectTimeout = unit.toMillis(connectTimeout);
+      return this;
+    }
+
+    public Builder withReadTimeout(final long readTimeout, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.readTimeout = unit.toMillis(readTimeout);
+      return this;
+    }
+
+    public Builder withWriteTimeout(final long writeTimeout, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.writeTimeout = unit.toMillis(writeTimeout);
+      return this;
+    }
+
+    /**
+     * Enables HTTP cache revalidating GET responses (disabled by default)
+     */
+    public Builder withCache(final ConditionalCache cache) {
+      Objects.requireNonNull(cache, "cache == null");
+      this.cache = cache;
+      return this;
+    }
+
+    /**
+     * Enables gzip compression of the request bodies of at least the given length in bytes
+     * (disabled by default), see {@link GzipRequestInterceptor}
+     */
+    public Builder withGzip(final long minBytes) {
+      this.gzip = new GzipRequestInterceptor(minBytes);
+      return this;
+    }
+
+    /**
+     * Creates new client. Clients derived from it with OkHttpClient#newBuilder() share its
+     * connection pool and dispatcher.
+     */
+    public OkHttpClient build() {
+      final Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(maxRequests);
+      dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+      final List<Protocol> protocols = http2
+          ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+          : Collections.singletonList(Protocol.HTTP_1_1);
+
+      final OkHttpClient.Builder builder = new OkHttpClient.Builder().dispatcher(dispatcher)
+          .connectionPool(
+              new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS))
+          .protocols(protocols)
+          .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+          .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+          .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS);
+
+      if (cache != null) {
+        builder.addInterceptor(cache);
+      }
+
+      if (gzip != null) {
+        builder.addInterceptor(gzip);
+      }
+
+      return builder.build();
+    }
+  }
+}
@@ -18,7 +18,7 @@ package com.github.pwittchen.yaas.sdk;
 /**
  * Represents Zone of the microservice and its location (EU or US).
  */
-public enum Zone {
+public enum Zone implements Endpoint {
 
   EU("eu"), US("us");
 
@@ -36,7 +36,7 @@ public enum Zone {
     return location;
   }
 
-  public String getUrl() {
+  @Override public String getUrl() {
     return url;
   }
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors for the {@link BlockingYaaS} requests. This version is packed into
+ * META-INF/versions/21 of the multi-release JAR and runs each task on its own virtual thread.
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true when the executors run tasks on the virtual threads
+   */
+  public static boolean isAvailable() {
+    return true;
+  }
+
+  /**
+   * Creates executor running each task on a new virtual thread
+   *
+   * @param name prefix of the names of the threads
+   * @return executor, which should be shut down when it's no longer used
+   */
+  public static ExecutorService newExecutor(final String name) {
+    Objects.requireNonNull(name, "name == null");
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory());
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import com.github.pwittchen.yaas.sdk.testing.FakeYaaS;
+import com.github.pwittchen.yaas.sdk.testing.Route;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class BlockingYaaSTest {
+
+  private FakeYaaS fake;
+  private YaaSProject project;
+  private YaaSAuthorization authorization;
+  private TokenCache tokenCache;
+  private BlockingYaaS blockingYaaS;
+
+  @Before
+  public void setUp() throws IOException {
+    fake = new FakeYaaS.Builder().withTokenLatency(50, TimeUnit.MILLISECONDS)
+        .withRoute(Route.get("org/service/v1/products")
+            .withResponse(200, "{\"id\":\"1\",\"name\":\"product\"}"))
+        .withRoute(Route.any("org/service/v1/orders").withResponse(201, "{\"id\":\"2\"}"))
+        .withRoute(Route.get("org/service/v1/failing").withErrorRate(1))
+        .start();
+    final OkHttpClient client = new YaaSTransport.Builder().build();
+    final Endpoint endpoint = Endpoint.of(fake.url().toString());
+    project = new YaaSProject(endpoint, "org", "service", "v1", "clientId", "clientSecret");
+    authorization = new YaaSAuthorization(endpoint, client, new GsonConverter());
+    tokenCache = new InMemoryTokenCache();
+    blockingYaaS = new BlockingYaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withTokenCache(tokenCache)
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    fake.close();
+  }
+
+  @Test
+  public void shouldPerformRequestWithCachedToken() throws IOException {
+    // when
+    try (Response first = blockingYaaS.get("products/1")) {
+      assertThat(first.code()).isEqualTo(200);
+    }
+    try (Response second = blockingYaaS.get("products/2")) {
+      assertThat(second.code()).isEqualTo(200);
+    }
+
+    // then
+    assertThat(fake.getTokenCalls()).isEqualTo(1);
+    assertThat(fake.getRequests()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldShareTokenWithReactiveClient() throws IOException {
+    // given
+    final YaaS yaas = new YaaS(project, authorization, tokenCache);
+    yaas.get("products/1").blockingGet().close();
+
+    // when
+    blockingYaaS.get("products/2").close();
+
+    // then
+    assertThat(fake.getTokenCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRequestOneTokenForConcurrentThreads() throws Exception {
+    // given
+    final ExecutorService executor = VirtualThreads.newExecutor("yaas-test-");
+    final List<Future<Integer>> codes = new ArrayList<>();
+
+    // when
+    for (int i = 0; i < 50; i++) {
+      final String path = "products/" + i;
+      codes.add(executor.submit(() -> {
+        try (Response response = blockingYaaS.get(path)) {
+          return response.code();
+        }
+      }));
+    }
+
+    // then
+    for (Future<Integer> code : codes) {
+      assertThat(code.get()).isEqualTo(200);
+    }
+    executor.shutdown();
+    assertThat(fake.getTokenCalls()).isEqualTo(1);
+    assertThat(fake.getRequests()).isEqualTo(50);
+  }
+
+  @Test
+  public void shouldReplayRequestWhenAccessTokenIsRevoked() throws IOException {
+    // given
+    blockingYaaS.get("products/1").close();
+    fake.revokeTokens();
+
+    // when
+    final Response response = blockingYaaS.get("products/1");
+    response.close();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(fake.getTokenCalls()).isEqualTo(2);
+    assertThat(fake.getRejectedRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldConvertResponseBody() throws IOException {
+    // given
+    final RequestBody body =
+        RequestBody.create(MediaType.parse("application/json"), "{\"name\":\"order\"}");
+
+    // when
+    final Product product = blockingYaaS.get("products/1", Product.class);
+    final Product order = blockingYaaS.post("orders", body, Product.class);
+
+    // then
+    assertThat(product.id).isEqualTo("1");
+    assertThat(product.name).isEqualTo("product");
+    assertThat(order.id).isEqualTo("2");
+  }
+
+  @Test
+  public void shouldThrowExceptionWhenTypedRequestFails() throws IOException {
+    try {
+      // when
+      blockingYaaS.get("failing", Product.class);
+      fail("YaaSException expected");
+    } catch (YaaSException e) {
+      // then
+      assertThat(e.getCode()).isEqualTo(500);
+      assertThat(e.getUrl()).endsWith("org/service/v1/failing");
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldThrowIOExceptionWhenTokenCanNotBeRequested() throws IOException {
+    // given
+    final Endpoint unavailable = Endpoint.of("http://127.0.0.1:1/");
+    final BlockingYaaS unavailableYaaS = new BlockingYaaS(
+        new YaaSProject(unavailable, "org", "service", "v1", "clientId", "clientSecret"),
+        new YaaSAuthorization(unavailable));
+
+    // when
+    unavailableYaaS.get("products/1");
+  }
+
+  static class Product {
+    String id;
+    String name;
+  }
+}
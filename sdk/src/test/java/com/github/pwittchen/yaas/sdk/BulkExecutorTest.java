@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkExecutorTest {
+
+  @Test
+  public void shouldNotExceedMaxConcurrency() {
+    // given
+    final Client client = mock(Client.class);
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    when(client.put(anyString(), any(RequestBody.class))).thenAnswer(invocation ->
+        Single.just(createResponse(200))
+            .delay(5, TimeUnit.MILLISECONDS)
+            .doOnSubscribe(disposable ->
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+            .doOnSuccess(response -> inFlight.decrementAndGet()));
+    final BulkExecutor executor = new BulkExecutor(client, 4, false);
+    final RequestBody body = RequestBody.create(null, "{}");
+
+    // when
+    final List<BulkResult> results = executor.execute(
+        Flowable.range(0, 50).map(i -> BulkRequest.put("products/" + i, body)))
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(results).hasSize(50);
+    assertThat(maxInFlight.get()).isAtMost(4);
+    assertThat(executor.getSucceeded()).isEqualTo(50);
+    assertThat(executor.getThroughput()).isGreaterThan(0.0);
+  }
+
+  @Test
+  public void shouldMeasureThroughputOfLastExecutionWithoutIdleTime() throws InterruptedException {
+    // given
+    final Client client = mock(Client.class);
+    when(client.delete(anyString())).thenAnswer(
+        invocation -> Single.just(createResponse(204)).delay(5, TimeUnit.MILLISECONDS));
+    final BulkExecutor executor = new BulkExecutor(client, 4, false);
+    executor.execute(Flowable.range(0, 20).map(i -> BulkRequest.delete("products/" + i)))
+        .blockingSubscribe();
+    Thread.sleep(200);
+
+    // when
+    executor.execute(Flowable.range(0, 20).map(i -> BulkRequest.delete("products/" + i)))
+        .blockingSubscribe();
+    final double throughput = executor.getThroughput();
+    Thread.sleep(50);
+
+    // then
+    assertThat(executor.getSucceeded()).isEqualTo(40);
+    assertThat(throughput).isGreaterThan(100.0);
+    assertThat(executor.getThroughput()).isEqualTo(throughput);
+  }
+
+  @Test
+  public void shouldEmitResultsInOrderOfRequests() {
+    // given
+    final Client client = mock(Client.class);
+    when(client.get(anyString())).thenAnswer(invocation -> {
+      final String path = invocation.getArgument(0);
+      final long delay = path.equals("first") ? 50 : 0;
+      return Single.just(createResponse(200)).delay(delay, TimeUnit.MILLISECONDS);
+    });
+    final BulkExecutor executor = new BulkExecutor(client, 2, true);
+
+    // when
+    final List<BulkResult> results = executor.execute(
+        Flowable.just(BulkRequest.get("first"), BulkRequest.get("second")))
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(results.get(0).request.path).isEqualTo("first");
+    assertThat(results.get(1).request.path).isEqualTo("second");
+  }
+
+  @Test
+  public void shouldReportFailuresAsResults() {
+    // given
+    final Client client = mock(Client.class);
+    when(client.delete("failing")).thenReturn(Single.error(new IOException("error")));
+    when(client.delete("missing")).thenReturn(Single.just(createResponse(404)));
+    when(client.delete("existing")).thenReturn(Single.just(createResponse(204)));
+    final BulkExecutor executor = new BulkExecutor(client, 2, true);
+
+    // when
+    final List<BulkResult> results = executor.execute(Flowable.just(
+        BulkRequest.delete("failing"), BulkRequest.delete("missing"),
+        BulkRequest.delete("existing")))
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(results.get(0).error).isInstanceOf(IOException.class);
+    assertThat(results.get(1).code).isEqualTo(404);
+    assertThat(results.get(2).isSuccessful()).isTrue();
+    assertThat(executor.getFailed()).isEqualTo(2);
+    assertThat(executor.getSucceeded()).isEqualTo(1);
+  }
+
+  private Response createResponse(final int code) {
+    return new Response.Builder().request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("test")
+        .build();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CircuitBreakerTest {
+
+  private static final ServiceKey SERVICE = new ServiceKey("org", "service", "v1");
+  private static final ServiceKey OTHER_SERVICE = new ServiceKey("org", "other", "v1");
+
+  @Test
+  public void shouldOpenCircuitWhenFailureRateIsExceeded() {
+    // given
+    final CircuitBreaker breaker = new CircuitBreaker.Builder().withWindow(10, 4).build();
+
+    // when
+    breaker.execute(SERVICE, Single.just(createResponse(200))).blockingGet();
+    breaker.execute(SERVICE, Single.just(createResponse(200))).blockingGet();
+    breaker.execute(SERVICE, Single.just(createResponse(503))).blockingGet();
+    final CircuitBreaker.State beforeThreshold = breaker.getState(SERVICE);
+    breaker.execute(SERVICE, Single.<Response>error(new IOException("timeout"))).test();
+
+    // then
+    assertThat(beforeThreshold).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(breaker.getState(SERVICE)).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.getState(OTHER_SERVICE)).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void shouldRejectRequestsWithoutCallingServiceWhileCircuitIsOpen() {
+    // given
+    final CircuitBreaker breaker = open(new CircuitBreaker.Builder().withWindow(1, 1).build());
+    final SingleSubject<Response> call = SingleSubject.create();
+
+    // when
+    final TestObserver<Response> observer = breaker.execute(SERVICE, call).test();
+
+    // then
+    observer.assertError(RequestRejectedException.class);
+    assertThat(call.hasObservers()).isFalse();
+    breaker.execute(OTHER_SERVICE, Single.just(createResponse(200))).test().assertComplete();
+  }
+
+  @Test
+  public void shouldCloseCircuitWhenProbesSucceed() throws InterruptedException {
+    // given
+    final CircuitBreaker breaker = open(new CircuitBreaker.Builder().withWindow(1, 1)
+        .withOpenDuration(10, TimeUnit.MILLISECONDS)
+        .withHalfOpenCalls(2)
+        .build());
+    Thread.sleep(20);
+    final SingleSubject<Response> firstProbe = SingleSubject.create();
+    final SingleSubject<Response> secondProbe = SingleSubject.create();
+
+    // when
+    breaker.execute(SERVICE, firstProbe).test();
+    breaker.execute(SERVICE, secondProbe).test();
+    final TestObserver<Response> rejected =
+        breaker.execute(SERVICE, Single.just(createResponse(200))).test();
+    final CircuitBreaker.State whileProbing = breaker.getState(SERVICE);
+    firstProbe.onSuccess(createResponse(200));
+    secondProbe.onSuccess(createResponse(200));
+
+    // then
+    rejected.assertError(RequestRejectedException.class);
+    assertThat(whileProbing).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(breaker.getState(SERVICE)).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void shouldOpenCircuitAgainWhenProbeFails() throws InterruptedException {
+    // given
+    final CircuitBreaker breaker = open(new CircuitBreaker.Builder().withWindow(1, 1)
+        .withOpenDuration(10, TimeUnit.MILLISECONDS)
+        .build());
+    Thread.sleep(20);
+
+    // when
+    breaker.execute(SERVICE, Single.just(createResponse(500))).blockingGet();
+
+    // then
+    assertThat(breaker.getState(SERVICE)).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void shouldTreatSlowCallsAsFailures() {
+    // given
+    final CircuitBreaker breaker = new CircuitBreaker.Builder().withWindow(1, 1)
+        .withSlowCallDuration(1, TimeUnit.MILLISECONDS)
+        .build();
+
+    // when
+    breaker.execute(SERVICE, Single.just(createResponse(200)).delay(10, TimeUnit.MILLISECONDS))
+        .blockingGet();
+
+    // then
+    assertThat(breaker.getState(SERVICE)).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  private static CircuitBreaker open(final CircuitBreaker breaker) {
+    breaker.execute(SERVICE, Single.just(createResponse(500))).blockingGet();
+    assertThat(breaker.getState(SERVICE)).isEqualTo(CircuitBreaker.State.OPEN);
+    return breaker;
+  }
+
+  static Response createResponse(final int code) {
+    return new Response.Builder().request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("test")
+        .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+        .build();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ClientTest {
+
+  @Test
+  public void shouldConvertResponseBodyOfClientImplementingOnlyRawRequests() {
+    // given
+    final Client client = new RawClient(200, "{\"name\":\"product\"}");
+
+    // when
+    final Product product = client.<Product>get("products/1", Product.class).blockingGet();
+
+    // then
+    assertThat(product.name).isEqualTo("product");
+  }
+
+  @Test
+  public void shouldEmitYaaSExceptionWhenResponseIsNotSuccessful() {
+    // given
+    final Client client = new RawClient(404, "{\"message\":\"not found\"}");
+
+    // when
+    final TestObserver<Product> observer = client.<Product>put("products/1",
+        RequestBody.create(MediaType.parse("application/json"), "{}"), Product.class).test();
+
+    // then
+    observer.assertError(YaaSException.class);
+    assertThat(((YaaSException) observer.errors().get(0)).getCode()).isEqualTo(404);
+  }
+
+  @Test
+  public void shouldFailAndDisposeRequestWhenDefaultDeadlineIsExceeded() {
+    // given
+    final AtomicBoolean disposed = new AtomicBoolean();
+    final Client client = new RawClient(200, "{}") {
+      @Override public Single<Response> get(final String path) {
+        return Single.<Response>never().doOnDispose(() -> disposed.set(true));
+      }
+    }.withDeadline(50, TimeUnit.MILLISECONDS);
+
+    // when
+    final TestObserver<Response> observer = client.get("products/1").test();
+    observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+    // then
+    observer.assertError(TimeoutException.class);
+    assertThat(disposed.get()).isTrue();
+  }
+
+  static class Product {
+    String name;
+  }
+
+  /**
+   * Client implementing only the methods, which were abstract before typed requests were added
+   */
+  static class RawClient implements Client {
+    private final int code;
+    private final String body;
+
+    RawClient(final int code, final String body) {
+      this.code = code;
+      this.body = body;
+    }
+
+    @Override public Single<Response> get(final String path) {
+      return Single.fromCallable(this::createResponse);
+    }
+
+    @Override public Single<Response> post(final String path, final RequestBody body) {
+      return Single.fromCallable(this::createResponse);
+    }
+
+    @Override public Single<Response> put(final String path, final RequestBody body) {
+      return Single.fromCallable(this::createResponse);
+    }
+
+    @Override public Single<Response> delete(final String path, final RequestBody body) {
+      return Single.fromCallable(this::createResponse);
+    }
+
+    @Override public Single<Response> delete(final String path) {
+      return Single.fromCallable(this::createResponse);
+    }
+
+    private Response createResponse() {
+      return new Response.Builder().request(new Request.Builder().url(Zone.EU.getUrl()).build())
+          .protocol(Protocol.HTTP_1_1)
+          .code(code)
+          .message("test")
+          .body(ResponseBody.create(MediaType.parse("application/json"), body))
+          .build();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Response;
+import org.junit.Test;
+
+import static com.github.pwittchen.yaas.sdk.CircuitBreakerTest.createResponse;
+import static com.google.common.truth.Truth.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+  private static final ServiceKey SERVICE = new ServiceKey("org", "service", "v1");
+  private static final ServiceKey OTHER_SERVICE = new ServiceKey("org", "other", "v1");
+
+  @Test
+  public void shouldRejectRequestsExceedingLimitOfTheService() {
+    // given
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().withInitialLimit(2).build();
+    final SingleSubject<Response> slowCall = SingleSubject.create();
+
+    // when
+    limiter.execute(SERVICE, slowCall).test();
+    limiter.execute(SERVICE, slowCall).test();
+    final TestObserver<Response> rejected = limiter.execute(SERVICE, slowCall).test();
+    final TestObserver<Response> other =
+        limiter.execute(OTHER_SERVICE, Single.just(createResponse(200))).test();
+
+    // then
+    rejected.assertError(RequestRejectedException.class);
+    other.assertComplete();
+    assertThat(limiter.getInFlight(SERVICE)).isEqualTo(2);
+    slowCall.onSuccess(createResponse(200));
+    assertThat(limiter.getInFlight(SERVICE)).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldDecreaseLimitWhenServiceIsOverloaded() {
+    // given
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().withInitialLimit(10)
+        .withBackoffRatio(0.5)
+        .build();
+
+    // when
+    limiter.execute(SERVICE, Single.just(createResponse(503))).blockingGet();
+    limiter.execute(SERVICE, Single.<Response>error(new IOException("timeout"))).test();
+    limiter.execute(SERVICE, Single.just(createResponse(429))).blockingGet();
+
+    // then
+    assertThat(limiter.getLimit(SERVICE)).isEqualTo(1);
+    assertThat(limiter.getLimit(OTHER_SERVICE)).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldDecreaseLimitWhenLatencyExceedsThreshold() {
+    // given
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().withInitialLimit(10)
+        .withBackoffRatio(0.5)
+        .withLatencyThreshold(1, TimeUnit.MILLISECONDS)
+        .build();
+
+    // when
+    limiter.execute(SERVICE, Single.just(createResponse(200)).delay(10, TimeUnit.MILLISECONDS))
+        .blockingGet();
+
+    // then
+    assertThat(limiter.getLimit(SERVICE)).isEqualTo(5);
+  }
+
+  @Test
+  public void shouldIncreaseLimitOnlyWhenItIsUtilized() {
+    // given
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().withInitialLimit(4)
+        .withLimits(1, 5)
+        .build();
+
+    // when
+    for (int i = 0; i < 20; i++) {
+      limiter.execute(OTHER_SERVICE, Single.just(createResponse(200))).blockingGet();
+      final SingleSubject<Response> calls = SingleSubject.create();
+      limiter.execute(SERVICE, calls).test();
+      limiter.execute(SERVICE, calls).test();
+      limiter.execute(SERVICE, calls).test();
+      calls.onSuccess(createResponse(200));
+    }
+
+    // then
+    assertThat(limiter.getLimit(OTHER_SERVICE)).isEqualTo(4);
+    assertThat(limiter.getLimit(SERVICE)).isEqualTo(5);
+  }
+}
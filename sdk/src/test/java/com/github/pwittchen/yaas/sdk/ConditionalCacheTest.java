@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ConditionalCacheTest {
+
+  private static final String URL = "https://api.eu.yaas.io/org/service/v1/products";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void shouldServeNotModifiedResponseFromCache() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    final FakeChain chain = new FakeChain(createRequest("Bearer token"),
+        createResponse(200, "\"v1\"", "[1, 2]"), createResponse(304, "\"v1\"", ""));
+
+    // when
+    cache.intercept(chain).close();
+    final Response response = cache.intercept(chain);
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(response.body().string()).isEqualTo("[1, 2]");
+    assertThat(chain.requests.get(0).header("If-None-Match")).isNull();
+    assertThat(chain.requests.get(1).header("If-None-Match")).isEqualTo("\"v1\"");
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareEntriesBetweenCredentials() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    final FakeChain first = new FakeChain(createRequest("Bearer first"),
+        createResponse(200, "\"v1\"", "[1, 2]"));
+    final FakeChain second = new FakeChain(createRequest("Bearer second"),
+        createResponse(200, "\"v1\"", "[3]"));
+
+    // when
+    cache.intercept(first).close();
+    cache.intercept(second).close();
+
+    // then
+    assertThat(second.requests.get(0).header("If-None-Match")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldShareEntriesBetweenTokensOfTheSameClientAndScope() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    final TokenKey tokenKey = new TokenKey(Zone.EU, "client", "scope");
+    final FakeChain first = new FakeChain(createRequest("Bearer first", tokenKey),
+        createResponse(200, "\"v1\"", "[1, 2]"));
+    final FakeChain second = new FakeChain(createRequest("Bearer refreshed", tokenKey),
+        createResponse(304, "\"v1\"", ""));
+
+    // when
+    cache.intercept(first).close();
+    final Response response = cache.intercept(second);
+
+    // then
+    assertThat(second.requests.get(0).header("If-None-Match")).isEqualTo("\"v1\"");
+    assertThat(response.body().string()).isEqualTo("[1, 2]");
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareEntriesBetweenScopes() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    final FakeChain first = new FakeChain(
+        createRequest("Bearer token", new TokenKey(Zone.EU, "client", "first")),
+        createResponse(200, "\"v1\"", "[1, 2]"));
+    final FakeChain second = new FakeChain(
+        createRequest("Bearer token", new TokenKey(Zone.EU, "client", "second")),
+        createResponse(200, "\"v1\"", "[3]"));
+
+    // when
+    cache.intercept(first).close();
+    cache.intercept(second).close();
+
+    // then
+    assertThat(second.requests.get(0).header("If-None-Match")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldUpdateEntryWithHeadersOfNotModifiedResponse() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    final FakeChain chain = new FakeChain(createRequest("Bearer token"),
+        createResponse(200, "\"v1\"", "[1, 2]"), createResponse(304, "\"v2\"", ""),
+        createResponse(304, "\"v2\"", ""));
+
+    // when
+    cache.intercept(chain).close();
+    final Response revalidated = cache.intercept(chain);
+    cache.intercept(chain).close();
+
+    // then
+    assertThat(revalidated.header("ETag")).isEqualTo("\"v2\"");
+    assertThat(revalidated.body().string()).isEqualTo("[1, 2]");
+    assertThat(chain.requests.get(2).header("If-None-Match")).isEqualTo("\"v2\"");
+  }
+
+  @Test
+  public void shouldNotStoreResponsesLargerThanLimit() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().withMaxEntryBytes(4).build();
+    final FakeChain chain = new FakeChain(createRequest("Bearer token"),
+        createResponse(200, "\"v1\"", "[1, 2, 3]"));
+
+    // when
+    final Response response = cache.intercept(chain);
+
+    // then
+    assertThat(response.body().string()).isEqualTo("[1, 2, 3]");
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().withMaxEntries(1).build();
+
+    // when
+    cache.intercept(new FakeChain(createRequest("Bearer first"),
+        createResponse(200, "\"v1\"", "[1]"))).close();
+    cache.intercept(new FakeChain(createRequest("Bearer second"),
+        createResponse(200, "\"v1\"", "[2]"))).close();
+
+    // then
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRevalidateEntryStoredOnDisk() throws IOException {
+    // given
+    new ConditionalCache.Builder().withDirectory(folder.getRoot(), 1024)
+        .build()
+        .intercept(new FakeChain(createRequest("Bearer token"),
+            createResponse(200, "\"v1\"", "[1, 2]")))
+        .close();
+    final ConditionalCache cache =
+        new ConditionalCache.Builder().withDirectory(folder.getRoot(), 1024).build();
+    final FakeChain chain =
+        new FakeChain(createRequest("Bearer token"), createResponse(304, "\"v1\"", ""));
+
+    // when
+    final Response response = cache.intercept(chain);
+
+    // then
+    assertThat(chain.requests.get(0).header("If-None-Match")).isEqualTo("\"v1\"");
+    assertThat(response.body().string()).isEqualTo("[1, 2]");
+  }
+
+  @Test
+  public void shouldInvalidateEntryAfterUnsafeRequest() throws IOException {
+    // given
+    final ConditionalCache cache = new ConditionalCache.Builder().build();
+    cache.intercept(new FakeChain(createRequest("Bearer token"),
+        createResponse(200, "\"v1\"", "[1, 2]"))).close();
+    final Request put = createRequest("Bearer token").newBuilder()
+        .put(RequestBody.create(MediaType.parse("application/json"), "[3]"))
+        .build();
+
+    // when
+    cache.intercept(new FakeChain(put, createResponse(200, "\"v2\"", ""))).close();
+
+    // then
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  private Request createRequest(final String authorization) {
+    return new Request.Builder().url(URL).header("Authorization", authorization).build();
+  }
+
+  private Request createRequest(final String authorization, final TokenKey tokenKey) {
+    return createRequest(authorization).newBuilder().tag(tokenKey).build();
+  }
+
+  private Response createResponse(final int code, final String etag, final String body) {
+    return new Response.Builder().request(new Request.Builder().url(URL).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("")
+        .header("ETag", etag)
+        .header("Content-Type", "application/json")
+        .body(ResponseBody.create(MediaType.parse("application/json"), body))
+        .build();
+  }
+
+  private static class FakeChain implements Interceptor.Chain {
+    private final Request request;
+    private final Queue<Response> responses = new ArrayDeque<>();
+    private final List<Request> requests = new ArrayList<>();
+
+    private FakeChain(final Request request, final Response... responses) {
+      this.request = request;
+      for (Response response : responses) {
+        this.responses.add(response);
+      }
+    }
+
+    @Override public Request request() {
+      return request;
+    }
+
+    @Override public Response proceed(final Request request) {
+      requests.add(request);
+      return responses.remove().newBuilder().request(request).build();
+    }
+
+    @Override public Connection connection() {
+      return null;
+    }
+  }
+}
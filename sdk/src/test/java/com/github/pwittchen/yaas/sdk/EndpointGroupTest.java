@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class EndpointGroupTest {
+
+  private static final Endpoint FIRST = Endpoint.of("https://first.example.com/yaas/");
+  private static final Endpoint SECOND = Endpoint.of("https://second.example.com");
+
+  @Test
+  public void shouldPreferEndpointWithLowerLatency() {
+    // given
+    final EndpointGroup group = createGroup();
+    report(group, FIRST, TimeUnit.MILLISECONDS.toNanos(200), false);
+    report(group, SECOND, TimeUnit.MILLISECONDS.toNanos(10), false);
+
+    // when
+    final EndpointGroup.Member selected = group.select();
+
+    // then
+    assertThat(selected.endpoint).isEqualTo(SECOND);
+    assertThat(group.getLatency(SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test
+  public void shouldPreferEndpointWithoutErrors() {
+    // given
+    final EndpointGroup group = createGroup();
+    report(group, FIRST, TimeUnit.MILLISECONDS.toNanos(10), true);
+    report(group, FIRST, TimeUnit.MILLISECONDS.toNanos(10), false);
+    report(group, SECOND, TimeUnit.MILLISECONDS.toNanos(10), false);
+
+    // when
+    final EndpointGroup.Member selected = group.select();
+
+    // then
+    assertThat(selected.endpoint).isEqualTo(SECOND);
+    assertThat(group.getErrorRate(FIRST)).isGreaterThan(0.0);
+  }
+
+  @Test
+  public void shouldSkipEndpointFailingTooManyTimesInRow() {
+    // given
+    final EndpointGroup group = new EndpointGroup.Builder().withEndpoint(FIRST)
+        .withEndpoint(SECOND)
+        .withDownTime(2, 1, TimeUnit.MINUTES)
+        .build();
+    report(group, SECOND, TimeUnit.SECONDS.toNanos(10), false);
+
+    // when
+    report(group, FIRST, 1, true);
+    report(group, FIRST, 1, true);
+
+    // then
+    assertThat(group.isDown(FIRST)).isTrue();
+    for (int i = 0; i < 10; i++) {
+      assertThat(group.select().endpoint).isEqualTo(SECOND);
+    }
+  }
+
+  @Test
+  public void shouldSelectOtherEndpointThanExcludedOne() {
+    // given
+    final EndpointGroup group = createGroup();
+    final EndpointGroup.Member first = group.find(HttpUrl.parse(FIRST.getUrl()));
+
+    // when
+    final EndpointGroup.Member other = group.select(first);
+
+    // then
+    assertThat(other.endpoint).isEqualTo(SECOND);
+  }
+
+  @Test
+  public void shouldFindEndpointServingUrl() {
+    // given
+    final EndpointGroup group = createGroup();
+
+    // when
+    final EndpointGroup.Member first =
+        group.find(HttpUrl.parse("https://first.example.com/yaas/org/service/v1/products"));
+    final EndpointGroup.Member unknown =
+        group.find(HttpUrl.parse("https://first.example.com/org/service/v1/products"));
+
+    // then
+    assertThat(first.endpoint).isEqualTo(FIRST);
+    assertThat(unknown).isNull();
+    assertThat(group.getUrl()).isEqualTo("https://first.example.com/yaas/");
+  }
+
+  private static EndpointGroup createGroup() {
+    return new EndpointGroup.Builder().withEndpoint(FIRST).withEndpoint(SECOND).build();
+  }
+
+  private static void report(final EndpointGroup group, final Endpoint endpoint,
+      final long duration, final boolean failed) {
+    final EndpointGroup.Member member = group.find(HttpUrl.parse(endpoint.getUrl()));
+    member.onStart();
+    member.onEnd(duration, failed);
+  }
+}
@@ -15,6 +15,14 @@
  */
 package com.github.pwittchen.yaas.sdk;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -64,6 +72,73 @@ public class GsonConverterTest {
     assertThat(json).isEqualTo(expectedJson);
   }
 
+  @Test
+  public void shouldConvertFromJsonReaderToPojo() throws Exception {
+    // given
+    final Reader reader = new StringReader("{\"id\":5312,\"name\":\"test\"}");
+
+    // when
+    final TestObject object = jsonConverter.fromJson(reader, TestObject.class);
+
+    // then
+    assertThat(object.id).isEqualTo(5312);
+    assertThat(object.name).isEqualTo("test");
+  }
+
+  @Test
+  public void shouldConvertFromJsonSourceToPojo() throws Exception {
+    // given
+    final Buffer source =
+        new Buffer().writeUtf8("{\"id\":5312,\"name\":\"za\u017c\u00f3\u0142\u0107\"}");
+
+    // when
+    final TestObject object = jsonConverter.fromJson((BufferedSource) source, TestObject.class);
+
+    // then
+    assertThat(object.id).isEqualTo(5312);
+    assertThat(object.name).isEqualTo("za\u017c\u00f3\u0142\u0107");
+  }
+
+  @Test
+  public void shouldConvertFromJsonInputStreamToPojo() throws Exception {
+    // given
+    final InputStream inputStream =
+        new ByteArrayInputStream("{\"id\":5312,\"name\":\"test\"}".getBytes("UTF-8"));
+
+    // when
+    final TestObject object = jsonConverter.fromJson(inputStream, TestObject.class);
+
+    // then
+    assertThat(object.id).isEqualTo(5312);
+    assertThat(object.name).isEqualTo("test");
+  }
+
+  @Test
+  public void shouldConvertPojoToJsonWriter() throws Exception {
+    // given
+    final TestObject object = new TestObject(5312, "test");
+    final StringWriter writer = new StringWriter();
+
+    // when
+    jsonConverter.toJson(object, TestObject.class, writer);
+
+    // then
+    assertThat(writer.toString()).isEqualTo("{\"id\":5312,\"name\":\"test\"}");
+  }
+
+  @Test
+  public void shouldConvertPojoToJsonSink() throws Exception {
+    // given
+    final TestObject object = new TestObject(5312, "za\u017c\u00f3\u0142\u0107");
+    final Buffer sink = new Buffer();
+
+    // when
+    jsonConverter.toJson(object, TestObject.class, (BufferedSink) sink);
+
+    // then
+    assertThat(sink.readUtf8()).isEqualTo("{\"id\":5312,\"name\":\"za\u017c\u00f3\u0142\u0107\"}");
+  }
+
   private class TestObject {
     final int id;
     final String name;
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GzipRequestInterceptorTest {
+
+  private static final MediaType JSON = MediaType.parse("application/json");
+
+  @Test
+  public void shouldCompressBodyLargerThanThreshold() throws IOException {
+    // given
+    final String json = createJson(1000);
+    final Request request = createRequest(RequestBody.create(JSON, json));
+
+    // when
+    final Request sent = intercept(new GzipRequestInterceptor(1024), request);
+
+    // then
+    assertThat(sent.header("Content-Encoding")).isEqualTo("gzip");
+    final Buffer compressed = new Buffer();
+    sent.body().writeTo(compressed);
+    assertThat(compressed.size()).isLessThan((long) json.length());
+    assertThat(Okio.buffer(new GzipSource(compressed)).readUtf8()).isEqualTo(json);
+  }
+
+  @Test
+  public void shouldNotCompressBodySmallerThanThreshold() throws IOException {
+    // given
+    final Request request = createRequest(RequestBody.create(JSON, createJson(10)));
+
+    // when
+    final Request sent = intercept(new GzipRequestInterceptor(1024), request);
+
+    // then
+    assertThat(sent.header("Content-Encoding")).isNull();
+    assertThat(sent.body()).isSameAs(request.body());
+  }
+
+  @Test
+  public void shouldNotCompressUncompressedBody() throws IOException {
+    // given
+    final RequestBody body =
+        GzipRequestInterceptor.uncompressed(RequestBody.create(JSON, createJson(1000)));
+    final Request request = createRequest(body);
+
+    // when
+    final Request sent = intercept(new GzipRequestInterceptor(0), request);
+
+    // then
+    assertThat(sent.header("Content-Encoding")).isNull();
+    assertThat(sent.body().contentLength()).isEqualTo(body.contentLength());
+  }
+
+  private static Request intercept(final GzipRequestInterceptor interceptor,
+      final Request request) throws IOException {
+    final AtomicReference<Request> sent = new AtomicReference<>();
+    interceptor.intercept(new Interceptor.Chain() {
+      @Override public Request request() {
+        return request;
+      }
+
+      @Override public Response proceed(final Request proceeded) {
+        sent.set(proceeded);
+        return new Response.Builder().request(proceeded)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("test")
+            .build();
+      }
+
+      @Override public Connection connection() {
+        return null;
+      }
+    });
+    return sent.get();
+  }
+
+  private static Request createRequest(final RequestBody body) {
+    return new Request.Builder().url(Zone.EU.getUrl()).post(body).build();
+  }
+
+  private static String createJson(final int items) {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < items; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"price\":10}");
+    }
+    return json.append(']').toString();
+  }
+}
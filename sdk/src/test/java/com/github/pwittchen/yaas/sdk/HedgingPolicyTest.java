@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.junit.Test;
+
+import static com.github.pwittchen.yaas.sdk.CircuitBreakerTest.createResponse;
+import static com.google.common.truth.Truth.assertThat;
+
+public class HedgingPolicyTest {
+
+  @Test
+  public void shouldUseSecondCallWhenFirstOneIsSlowAndCloseResponseOfFirstOne() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(10, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    final SingleSubject<Response> slowCall = SingleSubject.create();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.defer(() -> calls.incrementAndGet() == 1
+        ? slowCall : Single.just(createResponse(200)));
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    // when
+    final Response response = policy.execute(call).blockingGet();
+    slowCall.onSuccess(createTrackedResponse(closed));
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(closed.get()).isTrue();
+    assertThat(policy.getHedgedRequests()).isEqualTo(1);
+    assertThat(policy.getWonHedges()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCancelSecondCallWhenFirstOneResponds() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(1, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    final SingleSubject<Response> firstCall = SingleSubject.create();
+    final SingleSubject<Response> secondCall = SingleSubject.create();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call =
+        Single.defer(() -> calls.incrementAndGet() == 1 ? firstCall : secondCall);
+    final TestObserver<Response> observer = policy.execute(call).test();
+    while (!secondCall.hasObservers()) {
+      Thread.yield();
+    }
+
+    // when
+    firstCall.onSuccess(createResponse(200));
+
+    // then
+    observer.assertValueCount(1);
+    assertThat(secondCall.hasObservers()).isFalse();
+    assertThat(policy.getWonHedges()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldCancelFirstCallWhenRequestIsDisposed() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(1, TimeUnit.SECONDS)
+        .build();
+    final SingleSubject<Response> call = SingleSubject.create();
+
+    // when
+    policy.execute(call).test().dispose();
+
+    // then
+    assertThat(call.hasObservers()).isFalse();
+  }
+
+  @Test
+  public void shouldCloseResponseOfSecondCallWhenFirstOneAlreadyResponded() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(1, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    final AtomicReference<SingleObserver<? super Response>> firstObserver =
+        new AtomicReference<>();
+    final AtomicReference<SingleObserver<? super Response>> secondObserver =
+        new AtomicReference<>();
+    final Single<Response> call = Single.unsafeCreate(observer -> {
+      observer.onSubscribe(Disposables.empty());
+      if (!firstObserver.compareAndSet(null, observer)) {
+        secondObserver.set(observer);
+      }
+    });
+    final AtomicBoolean closed = new AtomicBoolean();
+    final TestObserver<Response> observer = policy.execute(call).test();
+    while (secondObserver.get() == null) {
+      Thread.yield();
+    }
+
+    // when
+    firstObserver.get().onSuccess(createResponse(200));
+    secondObserver.get().onSuccess(createTrackedResponse(closed));
+
+    // then
+    observer.assertValueCount(1);
+    assertThat(closed.get()).isTrue();
+    assertThat(policy.getWonHedges()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFollowLatencyOfFirstCallsWhenSecondOnesWin() throws InterruptedException {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withPercentile(50, 1, 1, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.defer(() -> calls.incrementAndGet() % 2 == 1
+        ? Single.just(createResponse(200)).delay(50, TimeUnit.MILLISECONDS)
+        : Single.just(createResponse(200)));
+
+    // when
+    for (int i = 0; i < 100; i++) {
+      policy.execute(call).blockingGet();
+    }
+    Thread.sleep(200);
+
+    // then
+    assertThat(policy.getWonHedges()).isEqualTo(100);
+    assertThat(policy.getDelay()).isAtLeast(TimeUnit.MILLISECONDS.toNanos(40));
+  }
+
+  @Test
+  public void shouldNotHedgeFastCalls() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(1, TimeUnit.SECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.fromCallable(() -> {
+      calls.incrementAndGet();
+      return createResponse(200);
+    });
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      policy.execute(call).blockingGet();
+    }
+
+    // then
+    assertThat(calls.get()).isEqualTo(10);
+    assertThat(policy.getHedgedRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldLimitShareOfHedgedRequests() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withDelay(1, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(0.1)
+        .build();
+    final Single<Response> slowCall =
+        Single.just(createResponse(200)).delay(5, TimeUnit.MILLISECONDS);
+
+    // when
+    for (int i = 0; i < 50; i++) {
+      policy.execute(slowCall).blockingGet();
+    }
+
+    // then
+    assertThat(policy.getHedgedRequests()).isAtMost(5L);
+    assertThat(policy.getHedgedRequests()).isAtLeast(1L);
+  }
+
+  @Test
+  public void shouldFollowPercentileOfObservedLatencies() {
+    // given
+    final HedgingPolicy policy = new HedgingPolicy.Builder()
+        .withPercentile(50, 100, 2, TimeUnit.MILLISECONDS)
+        .build();
+    final Single<Response> call = Single.just(createResponse(200));
+    final long initialDelay = policy.getDelay();
+
+    // when
+    for (int i = 0; i < 100; i++) {
+      policy.execute(call).blockingGet();
+    }
+
+    // then
+    assertThat(initialDelay).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThat(policy.getDelay()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2));
+  }
+
+  private static Response createTrackedResponse(final AtomicBoolean closed) {
+    return createResponse(200).newBuilder().body(new ResponseBody() {
+      private final Buffer source = new Buffer();
+
+      @Override public MediaType contentType() {
+        return null;
+      }
+
+      @Override public long contentLength() {
+        return 0;
+      }
+
+      @Override public BufferedSource source() {
+        return source;
+      }
+
+      @Override public void close() {
+        closed.set(true);
+      }
+    }).build();
+  }
+}
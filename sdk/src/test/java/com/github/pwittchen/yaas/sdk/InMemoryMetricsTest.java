@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class InMemoryMetricsTest {
+
+  @Test
+  public void shouldCreatePathTemplateWithoutIdsAndQuery() {
+    // when
+    final String product = InMemoryMetrics.createTemplate("GET", "products/5a3d84ef1?q=x1");
+    final String variant = InMemoryMetrics.createTemplate("PUT", "products/123/variants/4");
+    final String categories = InMemoryMetrics.createTemplate("GET", "categories");
+
+    // then
+    assertThat(product).isEqualTo("GET products/{id}");
+    assertThat(variant).isEqualTo("PUT products/{id}/variants/{id}");
+    assertThat(categories).isEqualTo("GET categories");
+  }
+
+  @Test
+  public void shouldRecordLatenciesAndStatusCodesOfRequests() {
+    // given
+    final InMemoryMetrics metrics = new InMemoryMetrics();
+
+    // when
+    for (int i = 1; i <= 100; i++) {
+      metrics.onRequestStart("GET", "products/" + i);
+      metrics.onRequestEnd("GET", "products/" + i, i == 100 ? 500 : 200,
+          TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    metrics.onRequestStart("GET", "products/1");
+    metrics.onRequestFailed("GET", "products/1", new CancellationException(), 0);
+
+    // then
+    final LatencyHistogram latency = metrics.getLatencies().get("GET products/{id}");
+    assertThat(latency.getCount()).isEqualTo(101);
+    assertThat(latency.getMax()).isEqualTo(100_000);
+    assertThat((double) latency.getPercentile(50)).isWithin(12_500).of(50_000);
+    assertThat((double) latency.getPercentile(99)).isWithin(25_000).of(99_000);
+    assertThat(metrics.getStatusCodes()).containsEntry(200, 99L);
+    assertThat(metrics.getStatusCodes()).containsEntry(500, 1L);
+    assertThat(metrics.getFailures()).isEqualTo(1);
+    assertThat(metrics.getInFlightRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReadGaugesOfClient() {
+    // when
+    final InMemoryMetrics metrics = new InMemoryMetrics(new YaaSTransport.Builder().build());
+
+    // then
+    assertThat(metrics.getConnectionCount()).isEqualTo(0);
+    assertThat(metrics.getQueuedCallsCount()).isEqualTo(0);
+    assertThat(new InMemoryMetrics().getRunningCallsCount()).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class InMemoryTokenCacheTest {
+
+  private static final TokenKey KEY = new TokenKey(Zone.EU, "clientId");
+
+  private TokenCache tokenCache;
+  private AtomicInteger loads;
+
+  @Before
+  public void setUp() {
+    this.tokenCache = new InMemoryTokenCache(60, TimeUnit.SECONDS);
+    this.loads = new AtomicInteger();
+  }
+
+  @Test
+  public void shouldLoadTokenWhenCacheIsEmpty() {
+    // given
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.HOURS.toMillis(1));
+
+    // when
+    final AccessToken token = tokenCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(token.value).isEqualTo("token");
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReuseTokenBeforeSafetyMargin() {
+    // given
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.HOURS.toMillis(1));
+
+    // when
+    tokenCache.get(KEY, loader).blockingGet();
+    final AccessToken token = tokenCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(token.value).isEqualTo("token");
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldLoadNewTokenWithinSafetyMargin() {
+    // given
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.SECONDS.toMillis(30));
+
+    // when
+    tokenCache.get(KEY, loader).blockingGet();
+    tokenCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldLoadNewTokenAfterInvalidation() {
+    // given
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.HOURS.toMillis(1));
+
+    // when
+    tokenCache.get(KEY, loader).blockingGet();
+    tokenCache.invalidate(KEY);
+    tokenCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldReturnOnlyValidTokenWithoutLoading() {
+    // given
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.SECONDS.toMillis(30));
+    final AccessToken missing = tokenCache.getIfPresent(KEY);
+    tokenCache.get(KEY, loader).blockingGet();
+
+    // when
+    final AccessToken expiring = tokenCache.getIfPresent(KEY);
+    tokenCache.get(KEY, createLoader("token", TimeUnit.HOURS.toMillis(1))).blockingGet();
+    final AccessToken valid = tokenCache.getIfPresent(KEY);
+
+    // then
+    assertThat(missing).isNull();
+    assertThat(expiring).isNull();
+    assertThat(valid.value).isEqualTo("token");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldKeepTokensOfDifferentClientsSeparately() {
+    // given
+    final TokenKey otherKey = new TokenKey(Zone.EU, "otherClientId");
+
+    // when
+    tokenCache.get(KEY, createLoader("token", TimeUnit.HOURS.toMillis(1))).blockingGet();
+    final AccessToken token =
+        tokenCache.get(otherKey, createLoader("otherToken", TimeUnit.HOURS.toMillis(1)))
+            .blockingGet();
+
+    // then
+    assertThat(token.value).isEqualTo("otherToken");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldShareOneTokenRequestBetweenConcurrentCallers() throws Exception {
+    // given
+    final int callers = 1000;
+    final SingleSubject<AccessToken> response = SingleSubject.create();
+    final Single<AccessToken> loader = Single.defer(() -> {
+      loads.incrementAndGet();
+      return response;
+    });
+    final ExecutorService executor = Executors.newFixedThreadPool(16);
+    final CountDownLatch subscribed = new CountDownLatch(callers);
+    final List<TestObserver<AccessToken>> observers = new CopyOnWriteArrayList<>();
+
+    // when
+    for (int i = 0; i < callers; i++) {
+      executor.execute(() -> {
+        observers.add(tokenCache.get(KEY, loader).test());
+        subscribed.countDown();
+      });
+    }
+    subscribed.await(10, TimeUnit.SECONDS);
+    response.onSuccess(new AccessToken("token", System.currentTimeMillis() + 3600 * 1000));
+    executor.shutdown();
+
+    // then
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(observers).hasSize(callers);
+    for (TestObserver<AccessToken> observer : observers) {
+      observer.awaitTerminalEvent(10, TimeUnit.SECONDS);
+      observer.assertValue(token -> token.value.equals("token"));
+    }
+  }
+
+  @Test
+  public void shouldNotCacheFailedTokenRequest() {
+    // given
+    final Single<AccessToken> failingLoader = Single.defer(() -> {
+      loads.incrementAndGet();
+      return Single.error(new YaaSException("error"));
+    });
+
+    // when
+    tokenCache.get(KEY, failingLoader).test().assertError(YaaSException.class);
+    final AccessToken token =
+        tokenCache.get(KEY, createLoader("token", TimeUnit.HOURS.toMillis(1))).blockingGet();
+
+    // then
+    assertThat(token.value).isEqualTo("token");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRefreshTokenInBackgroundBeforeExpiration() {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    final TokenCache refreshingCache = createRefreshingCache(scheduler);
+    final Single<AccessToken> loader = Single.fromCallable(() -> new AccessToken(
+        "token" + loads.incrementAndGet(),
+        System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(6)));
+
+    // when
+    refreshingCache.get(KEY, loader).blockingGet();
+    scheduler.advanceTimeBy(150, TimeUnit.SECONDS);
+    final AccessToken token = refreshingCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(token.value).isEqualTo("token2");
+  }
+
+  @Test
+  public void shouldRefreshShortLivedTokenAfterHalfOfItsUsableLifetime() {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    final TokenCache refreshingCache = createRefreshingCache(scheduler);
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.MINUTES.toMillis(2));
+
+    // when
+    refreshingCache.get(KEY, loader).blockingGet();
+    scheduler.triggerActions();
+    final int loadsAtStart = loads.get();
+    scheduler.advanceTimeBy(25, TimeUnit.SECONDS);
+    final int loadsBeforeHalf = loads.get();
+    scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+    // then
+    assertThat(loadsAtStart).isEqualTo(1);
+    assertThat(loadsBeforeHalf).isEqualTo(1);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldNotRefreshTokenWithUnknownExpiration() {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    final TokenCache refreshingCache = createRefreshingCache(scheduler);
+    final Single<AccessToken> loader = Single.fromCallable(() -> {
+      loads.incrementAndGet();
+      return new AccessToken("token", 0);
+    });
+
+    // when
+    refreshingCache.get(KEY, loader).blockingGet();
+    scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+
+    // then
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepServingValidTokenAndRetryWhenRefreshFails() {
+    // given
+    final TestScheduler scheduler = new TestScheduler();
+    final TokenCache refreshingCache = createRefreshingCache(scheduler);
+    final Single<AccessToken> loader = Single.fromCallable(() -> {
+      if (loads.incrementAndGet() == 2) {
+        throw new YaaSException("refresh failed");
+      }
+      return new AccessToken("token" + loads.get(),
+          System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(6));
+    });
+
+    // when
+    refreshingCache.get(KEY, loader).blockingGet();
+    scheduler.advanceTimeBy(150, TimeUnit.SECONDS);
+    final AccessToken tokenAfterFailure = refreshingCache.get(KEY, loader).blockingGet();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    final AccessToken tokenAfterRetry = refreshingCache.get(KEY, loader).blockingGet();
+
+    // then
+    assertThat(tokenAfterFailure.value).isEqualTo("token1");
+    assertThat(tokenAfterRetry.value).isEqualTo("token3");
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedKeyWhenMaxSizeIsExceeded() throws Exception {
+    // given
+    final InMemoryTokenCache boundedCache = new InMemoryTokenCache.Builder().withMaxSize(2).build();
+    final TokenKey firstKey = new TokenKey(Zone.EU, "first");
+    final TokenKey secondKey = new TokenKey(Zone.EU, "second");
+    final TokenKey thirdKey = new TokenKey(Zone.EU, "third");
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.HOURS.toMillis(1));
+
+    // when
+    boundedCache.get(firstKey, loader).blockingGet();
+    Thread.sleep(5);
+    boundedCache.get(secondKey, loader).blockingGet();
+    Thread.sleep(5);
+    boundedCache.get(firstKey, loader).blockingGet();
+    Thread.sleep(5);
+    boundedCache.get(thirdKey, loader).blockingGet();
+    boundedCache.get(firstKey, loader).blockingGet();
+    boundedCache.get(secondKey, loader).blockingGet();
+
+    // then
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldNotEvictInsertedKeyWhoseTokenIsLoading() {
+    // given
+    final InMemoryTokenCache boundedCache = new InMemoryTokenCache.Builder().withMaxSize(1).build();
+    final TokenKey firstKey = new TokenKey(Zone.EU, "first");
+    final TokenKey secondKey = new TokenKey(Zone.EU, "second");
+    final SingleSubject<AccessToken> load = SingleSubject.create();
+    boundedCache.get(firstKey, createLoader("token", TimeUnit.HOURS.toMillis(1))).blockingGet();
+
+    // when
+    final TestObserver<AccessToken> observer = boundedCache.get(secondKey, load).test();
+    load.onSuccess(new AccessToken("secondToken", System.currentTimeMillis() + 3_600_000));
+
+    // then
+    observer.assertValue(token -> token.value.equals("secondToken"));
+    assertThat(boundedCache.size()).isEqualTo(1);
+    assertThat(boundedCache.getIfPresent(secondKey).value).isEqualTo("secondToken");
+    assertThat(boundedCache.getIfPresent(firstKey)).isNull();
+  }
+
+  @Test
+  public void shouldEvictKeysNotUsedLongerThanExpireAfterAccess() throws Exception {
+    // given
+    final InMemoryTokenCache expiringCache = new InMemoryTokenCache.Builder()
+        .withExpireAfterAccess(10, TimeUnit.MILLISECONDS)
+        .build();
+    final Single<AccessToken> loader = createLoader("token", TimeUnit.HOURS.toMillis(1));
+
+    // when
+    expiringCache.get(KEY, loader).blockingGet();
+    Thread.sleep(20);
+    expiringCache.get(new TokenKey(Zone.US, "clientId"), loader).blockingGet();
+
+    // then
+    assertThat(expiringCache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepTokensOfDifferentScopesSeparately() {
+    // given
+    final TokenKey scopedKey = new TokenKey(Zone.EU, "clientId", "hybris.tenant=test");
+
+    // when
+    tokenCache.get(KEY, createLoader("token", TimeUnit.HOURS.toMillis(1))).blockingGet();
+    final AccessToken token =
+        tokenCache.get(scopedKey, createLoader("scopedToken", TimeUnit.HOURS.toMillis(1)))
+            .blockingGet();
+
+    // then
+    assertThat(token.value).isEqualTo("scopedToken");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCreateRefreshingCacheWhenRefreshStartsWithinSafetyMargin() {
+    // when
+    new InMemoryTokenCache.Builder().withSafetyMargin(5, TimeUnit.MINUTES)
+        .withRefreshAhead(1, TimeUnit.MINUTES)
+        .withRefreshScheduler(new TestScheduler())
+        .build();
+
+    // then exception is thrown
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCreateCacheWithNegativeSafetyMargin() {
+    // when
+    new InMemoryTokenCache(-1, TimeUnit.SECONDS);
+
+    // then exception is thrown
+  }
+
+  private TokenCache createRefreshingCache(final TestScheduler scheduler) {
+    return new InMemoryTokenCache.Builder().withSafetyMargin(1, TimeUnit.MINUTES)
+        .withRefreshAhead(5, TimeUnit.MINUTES)
+        .withRefreshScheduler(scheduler)
+        .build();
+  }
+
+  private Single<AccessToken> createLoader(final String value, final long validity) {
+    return Single.fromCallable(() -> {
+      loads.incrementAndGet();
+      return new AccessToken(value, System.currentTimeMillis() + validity);
+    });
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PathTemplateTest {
+
+  @Test
+  public void shouldExpandTemplateWithTypedParameters() {
+    // given
+    final PathTemplate template = PathTemplate.compile("products/{productId}/variants/{id}");
+
+    // when
+    final String path = template.expand("5a3d", 42L);
+
+    // then
+    assertThat(path).isEqualTo("products/5a3d/variants/42");
+    assertThat(template.getNames()).containsExactly("productId", "id").inOrder();
+  }
+
+  @Test
+  public void shouldPercentEncodeParameters() {
+    // given
+    final PathTemplate template = PathTemplate.compile("categories/{name}");
+
+    // when
+    final String path = template.expand("shoes & socks/\u00f3");
+
+    // then
+    assertThat(path).isEqualTo("categories/shoes%20%26%20socks%2F%C3%B3");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotExpandTemplateWithWrongNumberOfParameters() {
+    // when
+    PathTemplate.compile("products/{id}").expand(1, 2);
+
+    // then exception is thrown
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCompileTemplateWithUnclosedParameter() {
+    // when
+    PathTemplate.compile("products/{id");
+
+    // then exception is thrown
+  }
+}
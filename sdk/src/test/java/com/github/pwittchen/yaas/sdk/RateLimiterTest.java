@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Response;
+import org.junit.Test;
+
+import static com.github.pwittchen.yaas.sdk.CircuitBreakerTest.createResponse;
+import static com.google.common.truth.Truth.assertThat;
+
+public class RateLimiterTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void shouldAllowBurstAndThenSpreadPermitsEvenly() {
+    // given
+    final RateLimiter limiter = new RateLimiter(10, 3);
+    final long now = System.nanoTime();
+
+    // when
+    final List<Long> delays = Flowable.range(0, 5).map(i -> limiter.reserve(now)).toList()
+        .blockingGet();
+
+    // then
+    assertThat(delays)
+        .containsExactly(0L, 0L, 0L, SECOND / 10, 2 * SECOND / 10)
+        .inOrder();
+  }
+
+  @Test
+  public void shouldRefillPermitsOverTime() {
+    // given
+    final RateLimiter limiter = new RateLimiter(10, 2);
+    final long now = System.nanoTime();
+    limiter.reserve(now);
+    limiter.reserve(now);
+
+    // when
+    final long delay = limiter.reserve(now + SECOND);
+
+    // then
+    assertThat(delay).isEqualTo(0L);
+  }
+
+  @Test
+  public void shouldFailFastWithoutTakingPermit() {
+    // given
+    final RateLimiter limiter = new RateLimiter.Builder().withRate(1)
+        .withMode(RateLimiter.Mode.FAIL_FAST)
+        .build();
+
+    // when
+    limiter.execute(Single.just(createResponse(200))).blockingGet();
+    final TestObserver<Response> rejected =
+        limiter.execute(Single.just(createResponse(200))).test();
+
+    // then
+    rejected.assertError(RequestRejectedException.class);
+    assertThat(limiter.getRejectedRequests()).isEqualTo(1);
+    assertThat(limiter.reserve(System.nanoTime() + SECOND)).isEqualTo(0L);
+  }
+
+  @Test
+  public void shouldWaitForPermit() {
+    // given
+    final RateLimiter limiter = new RateLimiter(20, 1);
+
+    // when
+    final long start = System.nanoTime();
+    Flowable.range(0, 3)
+        .flatMapSingle(i -> limiter.execute(Single.just(createResponse(200))))
+        .blockingLast();
+    final long elapsed = System.nanoTime() - start;
+
+    // then
+    assertThat(elapsed).isAtLeast(2 * SECOND / 20);
+    assertThat(limiter.getDelayedRequests()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRejectRequestWhichWouldWaitTooLong() {
+    // given
+    final RateLimiter limiter = new RateLimiter.Builder().withRate(1)
+        .withMaxWait(100, TimeUnit.MILLISECONDS)
+        .build();
+    final long now = System.nanoTime();
+
+    // when
+    limiter.reserve(now);
+
+    // then
+    assertThat(limiter.reserve(now)).isEqualTo(-1L);
+  }
+
+  @Test
+  public void shouldFollowQuotaReportedByService() {
+    // given
+    final RateLimiter limiter = new RateLimiter(1000, 10);
+
+    // when
+    limiter.update(createResponse(200).newBuilder()
+        .header("X-RateLimit-Remaining", "9")
+        .header("X-RateLimit-Reset", "1")
+        .build());
+
+    // then
+    assertThat(limiter.getRate()).isWithin(0.01).of(10);
+  }
+
+  @Test
+  public void shouldHoldRequestsUntilResetWhenQuotaIsExhausted() {
+    // given
+    final RateLimiter limiter = new RateLimiter.Builder().withRate(1000)
+        .withBurst(10)
+        .withMode(RateLimiter.Mode.FAIL_FAST)
+        .build();
+
+    // when
+    limiter.update(createResponse(429).newBuilder()
+        .header("Retry-After", "2")
+        .build());
+
+    // then
+    final long now = System.nanoTime();
+    assertThat(limiter.reserve(now)).isEqualTo(-1L);
+    assertThat(limiter.reserve(now + 3 * SECOND)).isEqualTo(0L);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RequestCoalescerTest {
+
+  @Test
+  public void shouldShareOneCallBetweenConcurrentRequests() {
+    // given
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final SingleSubject<Response> response = SingleSubject.create();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = response.doOnSubscribe(disposable -> calls.incrementAndGet());
+
+    // when
+    final Single<List<String>> bodies = Flowable.range(0, 100)
+        .flatMapSingle(i -> coalescer.get("key", call).map(result -> result.body().string()))
+        .toList()
+        .cache();
+    bodies.subscribe();
+    response.onSuccess(createResponse("{\"id\":1}"));
+
+    // then
+    assertThat(bodies.blockingGet()).hasSize(100);
+    assertThat(bodies.blockingGet()).containsNoneOf("", null);
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(coalescer.getCallCount()).isEqualTo(1);
+    assertThat(coalescer.getRequestCount()).isEqualTo(100);
+    assertThat(coalescer.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldNotShareCallBetweenDifferentKeys() {
+    // given
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final Single<Response> call = Single.fromCallable(() -> createResponse("{}"));
+
+    // when
+    coalescer.get("first", call).blockingGet();
+    coalescer.get("second", call).blockingGet();
+    coalescer.get("first", call).blockingGet();
+
+    // then
+    assertThat(coalescer.getCallCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldCancelCallWhenAllRequestsAreDisposed() {
+    // given
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final SingleSubject<Response> response = SingleSubject.create();
+
+    // when
+    final TestObserver<Response> first = coalescer.get("key", response).test();
+    final TestObserver<Response> second = coalescer.get("key", response).test();
+    first.dispose();
+    final boolean observedAfterFirst = response.hasObservers();
+    second.dispose();
+
+    // then
+    assertThat(observedAfterFirst).isTrue();
+    assertThat(response.hasObservers()).isFalse();
+    assertThat(coalescer.size()).isEqualTo(0);
+  }
+
+  private static Response createResponse(final String body) {
+    return new Response.Builder().request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("test")
+        .body(ResponseBody.create(MediaType.parse("application/json"), body))
+        .build();
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ResultCacheTest {
+
+  @Test
+  public void shouldReuseObjectUntilItExpires() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withTtl(1, TimeUnit.MINUTES).build();
+    final AtomicInteger loads = new AtomicInteger();
+    final Single<ResultCache.Loaded<String>> loader =
+        Single.fromCallable(() -> new ResultCache.Loaded<>("value" + loads.incrementAndGet(), 10));
+
+    // when
+    final String first = cache.get("key", "path", loader).blockingGet();
+    final String second = cache.get("key", "path", loader).blockingGet();
+
+    // then
+    assertThat(first).isEqualTo("value1");
+    assertThat(second).isEqualTo("value1");
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReloadExpiredObjectOnceAndServeStaleObjectMeanwhile() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withTtl(0, TimeUnit.SECONDS)
+        .withTtl("products", 1, TimeUnit.MILLISECONDS)
+        .build();
+    cache.get("key", "products", Single.just(new ResultCache.Loaded<>("old", 10))).blockingGet();
+    sleep(5);
+    final SingleSubject<ResultCache.Loaded<String>> reload = SingleSubject.create();
+    final AtomicInteger loads = new AtomicInteger();
+    final Single<ResultCache.Loaded<String>> loader =
+        reload.doOnSubscribe(disposable -> loads.incrementAndGet());
+
+    // when
+    final List<String> values = Flowable.range(0, 1000)
+        .flatMapSingle(i -> cache.get("key", "products", loader).subscribeOn(Schedulers.io()))
+        .toList()
+        .blockingGet();
+    reload.onSuccess(new ResultCache.Loaded<>("new", 10));
+
+    // then
+    assertThat(values).doesNotContain("new");
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.get("key", "products", loader).blockingGet()).isEqualTo("new");
+  }
+
+  @Test
+  public void shouldWaitForSingleReloadWhenServingStaleObjectIsDisabled() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withServeStale(false).build();
+    final SingleSubject<ResultCache.Loaded<String>> load = SingleSubject.create();
+    final AtomicInteger loads = new AtomicInteger();
+    final Single<ResultCache.Loaded<String>> loader =
+        load.doOnSubscribe(disposable -> loads.incrementAndGet());
+
+    // when
+    final Single<List<String>> values = Flowable.range(0, 100)
+        .flatMapSingle(i -> cache.get("key", "path", loader))
+        .toList()
+        .cache();
+    values.subscribe();
+    load.onSuccess(new ResultCache.Loaded<>("value", 10));
+
+    // then
+    assertThat(values.blockingGet()).hasSize(100);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotCacheFailures() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().build();
+
+    // when
+    cache.get("key", "path", Single.<ResultCache.Loaded<String>>error(new YaaSException("error")))
+        .test();
+    final String value =
+        cache.get("key", "path", Single.just(new ResultCache.Loaded<>("value", 10))).blockingGet();
+
+    // then
+    assertThat(value).isEqualTo("value");
+  }
+
+  @Test
+  public void shouldRemoveEntryWhenLoadFails() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().build();
+
+    // when
+    cache.get("key", "path", Single.<ResultCache.Loaded<String>>error(new YaaSException("error")))
+        .test()
+        .assertError(YaaSException.class);
+
+    // then
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.weight()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldKeepStaleObjectWhenReloadFails() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withTtl(1, TimeUnit.MILLISECONDS).build();
+    cache.get("key", "path", Single.just(new ResultCache.Loaded<>("old", 10))).blockingGet();
+    sleep(5);
+    final Single<ResultCache.Loaded<String>> failing =
+        Single.error(new YaaSException("error"));
+
+    // when
+    final String first = cache.get("key", "path", failing).blockingGet();
+    final String second = cache.get("key", "path", failing).blockingGet();
+
+    // then
+    assertThat(first).isEqualTo("old");
+    assertThat(second).isEqualTo("old");
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesWhenEntryCountIsExceeded() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withMaxEntries(2).build();
+    final AtomicInteger loads = new AtomicInteger();
+    final Single<ResultCache.Loaded<String>> loader =
+        Single.fromCallable(() -> new ResultCache.Loaded<>("value" + loads.incrementAndGet(), 10));
+
+    // when
+    cache.get("first", "path", loader).blockingGet();
+    cache.get("second", "path", loader).blockingGet();
+    cache.get("first", "path", loader).blockingGet();
+    cache.get("third", "path", loader).blockingGet();
+    final String first = cache.get("first", "path", loader).blockingGet();
+
+    // then
+    assertThat(first).isEqualTo("value1");
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesWhenWeightIsExceeded() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().withMaxWeight(25).build();
+
+    // when
+    for (int i = 0; i < 5; i++) {
+      cache.get("key" + i, "path", Single.just(new ResultCache.Loaded<>("value", 10)))
+          .blockingGet();
+    }
+
+    // then
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.weight()).isEqualTo(20);
+    assertThat(cache.getEvictionCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldApplyTtlOfLongestMatchingPrefix() {
+    // when
+    final ResultCache cache = new ResultCache.Builder().withTtl(1, TimeUnit.SECONDS)
+        .withTtl("categories", 1, TimeUnit.HOURS)
+        .withTtl("categories/tmp", 0, TimeUnit.SECONDS)
+        .build();
+
+    // then
+    assertThat(cache.getTtl("products/1")).isEqualTo(1000);
+    assertThat(cache.getTtl("categories/1")).isEqualTo(3600 * 1000);
+    assertThat(cache.getTtl("categories/tmp/1")).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldInvalidateEntriesOfPathPrefix() {
+    // given
+    final ResultCache cache = new ResultCache.Builder().build();
+    cache.get("a", "categories/1", Single.just(new ResultCache.Loaded<>("a", 10))).blockingGet();
+    cache.get("b", "products/1", Single.just(new ResultCache.Loaded<>("b", 10))).blockingGet();
+
+    // when
+    cache.invalidate("categories");
+
+    // then
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo(10);
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RetryBudgetTest {
+
+  @Test
+  public void shouldAllowRetriesProportionalToRequests() {
+    // given
+    final RetryBudget budget = new RetryBudget(0.1, 0);
+
+    // when
+    for (int i = 0; i < 100; i++) {
+      budget.onRequest();
+    }
+    int allowed = 0;
+    while (budget.tryAcquire()) {
+      allowed++;
+    }
+
+    // then
+    assertThat(allowed).isEqualTo(10);
+    assertThat(budget.getRetries()).isEqualTo(10);
+    assertThat(budget.getRejectedRetries()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldAllowMinimalNumberOfRetriesWithoutRequests() throws InterruptedException {
+    // given
+    final RetryBudget budget = new RetryBudget(0.1, 100);
+    while (budget.tryAcquire()) {
+      // exhaust initial budget
+    }
+
+    // when
+    Thread.sleep(50);
+
+    // then
+    assertThat(budget.tryAcquire()).isTrue();
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Response;
+import org.junit.Test;
+
+import static com.github.pwittchen.yaas.sdk.CircuitBreakerTest.createResponse;
+import static com.google.common.truth.Truth.assertThat;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void shouldRetryUnavailableResponseUntilSuccess() {
+    // given
+    final RetryPolicy policy = createPolicy(3, new RetryBudget(1, 10));
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call =
+        Single.fromCallable(() -> createResponse(calls.incrementAndGet() < 3 ? 503 : 200));
+
+    // when
+    final Response response = policy.execute(call).blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldPassLastResponseWhenAttemptsAreExhausted() {
+    // given
+    final RetryPolicy policy = createPolicy(2, new RetryBudget(1, 10));
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.fromCallable(() -> {
+      calls.incrementAndGet();
+      return createResponse(429);
+    });
+
+    // when
+    final Response response = policy.execute(call).blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(429);
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRetryIOExceptionButNotOtherErrors() {
+    // given
+    final RetryPolicy policy = createPolicy(3, new RetryBudget(1, 10));
+    final AtomicInteger ioCalls = new AtomicInteger();
+    final AtomicInteger rejectedCalls = new AtomicInteger();
+
+    // when
+    final TestObserver<Response> io = policy.execute(Single.<Response>defer(() -> {
+      ioCalls.incrementAndGet();
+      return Single.error(new IOException("connection reset"));
+    })).test();
+    final TestObserver<Response> rejected = policy.execute(Single.<Response>defer(() -> {
+      rejectedCalls.incrementAndGet();
+      return Single.error(new RequestRejectedException("circuit is open"));
+    })).test();
+    io.awaitTerminalEvent();
+    rejected.awaitTerminalEvent();
+
+    // then
+    io.assertError(IOException.class);
+    rejected.assertError(RequestRejectedException.class);
+    assertThat(ioCalls.get()).isEqualTo(3);
+    assertThat(rejectedCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldHonorRetryAfterUnlessItExceedsMaxBackoff() {
+    // given
+    final RetryPolicy policy = new RetryPolicy.Builder()
+        .withBackoff(1, 2000, TimeUnit.MILLISECONDS)
+        .withRetryBudget(new RetryBudget(1, 10))
+        .build();
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.fromCallable(() -> calls.incrementAndGet() == 1
+        ? createResponse(503).newBuilder().header("Retry-After", "1").build()
+        : createResponse(200));
+    final Single<Response> tooLong = Single.fromCallable(
+        () -> createResponse(503).newBuilder().header("Retry-After", "120").build());
+
+    // when
+    final long start = System.nanoTime();
+    final Response response = policy.execute(call).blockingGet();
+    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(elapsed).isAtLeast(1000L);
+    assertThat(policy.execute(tooLong).blockingGet().code()).isEqualTo(503);
+  }
+
+  @Test
+  public void shouldReadRetryAfterGivenAsDate() {
+    // given
+    final Response response = createResponse(503).newBuilder()
+        .header("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")
+        .build();
+
+    // when
+    final long retryAfter = RetryPolicy.getRetryAfter(response);
+
+    // then
+    assertThat(retryAfter).isEqualTo(0L);
+    assertThat(RetryPolicy.getRetryAfter(createResponse(503))).isEqualTo(-1L);
+  }
+
+  @Test
+  public void shouldStopRetryingWhenBudgetIsExhausted() {
+    // given
+    final RetryBudget budget = new RetryBudget(0, 0);
+    final RetryPolicy policy = createPolicy(3, budget);
+    final AtomicInteger calls = new AtomicInteger();
+    final Single<Response> call = Single.fromCallable(() -> {
+      calls.incrementAndGet();
+      return createResponse(503);
+    });
+
+    // when
+    final Response response = policy.execute(call).blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(503);
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(budget.getRejectedRetries()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepBackoffWithinBounds() {
+    // given
+    final RetryPolicy policy = new RetryPolicy.Builder()
+        .withBackoff(100, 1000, TimeUnit.MILLISECONDS)
+        .build();
+
+    // when
+    long maxFirst = 0;
+    long maxTenth = 0;
+    for (int i = 0; i < 1000; i++) {
+      maxFirst = Math.max(maxFirst, policy.getBackoff(1));
+      maxTenth = Math.max(maxTenth, policy.getBackoff(100));
+    }
+
+    // then
+    assertThat(maxFirst).isAtMost(100L);
+    assertThat(maxTenth).isAtMost(1000L);
+    assertThat(maxTenth).isGreaterThan(100L);
+  }
+
+  private static RetryPolicy createPolicy(final int maxAttempts, final RetryBudget budget) {
+    return new RetryPolicy.Builder().withMaxAttempts(maxAttempts)
+        .withBackoff(1, 10, TimeUnit.MILLISECONDS)
+        .withRetryBudget(budget)
+        .build();
+  }
+}
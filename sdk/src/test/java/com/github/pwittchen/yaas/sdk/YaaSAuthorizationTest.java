@@ -15,19 +15,32 @@
  */
 package com.github.pwittchen.yaas.sdk;
 
+import io.reactivex.observers.TestObserver;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.FormBody;
 import okhttp3.MediaType;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okhttp3.internal.http.RealResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class YaaSAuthorizationTest {
 
@@ -81,6 +94,23 @@ public class YaaSAuthorizationTest {
     accessToken.ifPresent(token -> assertThat(token).isEqualTo(givenAccessToken));
   }
 
+  @Test
+  public void shouldCreateAccessTokenExpiringAfterExpiresInSeconds() {
+    // given
+    final YaaSAuthorization authorization = new YaaSAuthorization();
+    final YaaSAuthorizationResponse response = new YaaSAuthorizationResponse();
+    response.accessToken = "token";
+    response.expiresIn = 3600;
+    final long requestedAt = 1000;
+
+    // when
+    final AccessToken accessToken = authorization.createAccessToken(response, requestedAt);
+
+    // then
+    assertThat(accessToken.value).isEqualTo("token");
+    assertThat(accessToken.expiresAt).isEqualTo(3601000);
+  }
+
   @Test
   public void shouldCreateAccessTokenRequest() {
     // given
@@ -121,4 +151,238 @@ public class YaaSAuthorizationTest {
     assertThat(body.value(1)).isEqualTo(clientId);
     assertThat(body.value(2)).isEqualTo(clientSecret);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldCreateAccessTokenRequestBodyWithScope() {
+    // given
+    final YaaSAuthorization authorization = new YaaSAuthorization();
+    final String scope = "hybris.tenant=test";
+
+    // when
+    final FormBody body =
+        authorization.createAccessTokenRequestBody("testId", "testSecret", scope);
+
+    // then
+    assertThat(body.size()).isEqualTo(4);
+    assertThat(body.name(3)).isEqualTo("scope");
+    assertThat(body.value(3)).isEqualTo(scope);
+  }
+
+  @Test
+  public void shouldCreateAuthorizedRequestForPathOfZone() {
+    // given
+    final YaaSAuthorization authorization = new YaaSAuthorization(Zone.US);
+
+    // when
+    final Request first =
+        authorization.createAuthorizedGetRequest("token", "org/service/v1/products?q=a b");
+    final Request second =
+        authorization.createAuthorizedGetRequest("token", "org/service/v1/products:search");
+
+    // then
+    assertThat(first.url().toString())
+        .isEqualTo("https://api.us.yaas.io/org/service/v1/products?q=a%20b");
+    assertThat(second.url().toString())
+        .isEqualTo("https://api.us.yaas.io/org/service/v1/products:search");
+    assertThat(first.header("Authorization")).isEqualTo("Bearer token");
+    assertThat(second.header("Authorization")).isSameAs(first.header("Authorization"));
+  }
+
+  @Test
+  public void shouldCreateRequestsForCustomEndpoint() {
+    // given
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Endpoint.of("http://localhost:8080/yaas"));
+
+    // when
+    final Request request =
+        authorization.createAuthorizedGetRequest("token", "org/service/v1/products");
+    final RequestBody body = authorization.createAccessTokenRequestBody("a", "b");
+    final Request tokenRequest = authorization.createAccessTokenRequest(body);
+
+    // then
+    assertThat(request.url().toString())
+        .isEqualTo("http://localhost:8080/yaas/org/service/v1/products");
+    assertThat(tokenRequest.url().toString())
+        .isEqualTo("http://localhost:8080/yaas/hybris/oauth2/v1/token");
+    assertThat(authorization.getZone()).isNull();
+  }
+
+  @Test
+  public void shouldSendIdempotencyKeyOfMarkedBody() {
+    // given
+    final YaaSAuthorization authorization = new YaaSAuthorization(Zone.EU);
+    final RequestBody body = RequestBody.create(MediaType.parse("application/json"), "{}");
+
+    // when
+    final Request request = authorization.createAuthorizedPostRequest("token",
+        "org/service/v1/orders", RetryPolicy.idempotent(body, "order-1"));
+
+    // then
+    assertThat(request.header("Idempotency-Key")).isEqualTo("order-1");
+    assertThat(request.body()).isSameAs(body);
+  }
+
+  @Test
+  public void shouldCancelCallWhenSubscriptionIsDisposed() {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+
+    // when
+    authorization.get("token", "path").test().dispose();
+
+    // then
+    verify(call).enqueue(any(Callback.class));
+    verify(call).cancel();
+  }
+
+  @Test
+  public void shouldCloseResponseArrivingAfterSubscriptionIsDisposed() throws IOException {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+    final ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+    final AtomicBoolean closed = new AtomicBoolean();
+    final ResponseBody body = new ResponseBody() {
+      @Override public MediaType contentType() {
+        return null;
+      }
+
+      @Override public long contentLength() {
+        return 0;
+      }
+
+      @Override public BufferedSource source() {
+        return new Buffer();
+      }
+
+      @Override public void close() {
+        closed.set(true);
+      }
+    };
+    final TestObserver<Response> observer = authorization.get("token", "path").test();
+    verify(call).enqueue(callback.capture());
+    observer.dispose();
+
+    // when
+    callback.getValue().onResponse(call, new Response.Builder()
+        .request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(body)
+        .build());
+
+    // then
+    observer.assertNoValues();
+    assertThat(closed.get()).isTrue();
+  }
+
+  @Test
+  public void shouldNotCancelCallAfterResponseIsEmitted() throws IOException {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+    final ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+    final TestObserver<Response> observer = authorization.get("token", "path").test();
+    verify(call).enqueue(callback.capture());
+
+    // when
+    callback.getValue().onResponse(call, new Response.Builder()
+        .request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .build());
+
+    // then
+    observer.assertValueCount(1);
+    verify(call, never()).cancel();
+  }
+
+  @Test
+  public void shouldCancelTokenCallWhenSubscriptionIsDisposed() {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+
+    // when
+    authorization.getToken("clientId", "clientSecret").test().dispose();
+
+    // then
+    verify(call).cancel();
+  }
+
+  @Test
+  public void shouldTagRequestMadeWithFetchedTokenWithTokenKey() throws IOException {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    when(call.execute()).thenReturn(new Response.Builder()
+        .request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(MediaType.parse("application/json"),
+            "{\"token_type\":\"Bearer\",\"access_token\":\"token\",\"expires_in\":3600}"))
+        .build());
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+
+    // when
+    final AccessToken token = authorization.fetchToken("clientId", "clientSecret", "scope");
+    final Request request = authorization.createAuthorizedGetRequest(token.value, "path");
+
+    // then
+    assertThat(request.tag()).isInstanceOf(TokenKey.class);
+    assertThat(((TokenKey) request.tag()).clientId).isEqualTo("clientId");
+    assertThat(((TokenKey) request.tag()).scope).isEqualTo("scope");
+    assertThat(authorization.createAuthorizedGetRequest("other", "path").tag())
+        .isNotInstanceOf(TokenKey.class);
+  }
+
+  @Test
+  public void shouldKeepTokenKeyOfTokenInUseWhenManyTokensAreFetched() throws IOException {
+    // given
+    final Call.Factory client = mock(Call.Factory.class);
+    final Call call = mock(Call.class);
+    final AtomicInteger counter = new AtomicInteger();
+    when(client.newCall(any(Request.class))).thenReturn(call);
+    when(call.execute()).thenAnswer(invocation -> new Response.Builder()
+        .request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(MediaType.parse("application/json"),
+            "{\"token_type\":\"Bearer\",\"access_token\":\"token" + counter.getAndIncrement()
+                + "\",\"expires_in\":3600}"))
+        .build());
+    final YaaSAuthorization authorization =
+        new YaaSAuthorization(Zone.EU, client, new GsonConverter());
+    final AccessToken token = authorization.fetchToken("clientId", "clientSecret", "scope");
+
+    // when
+    for (int i = 0; i < 300; i++) {
+      authorization.fetchToken("clientId", "clientSecret", "scope" + i);
+      authorization.createAuthorizedGetRequest(token.value, "path");
+    }
+
+    // then
+    assertThat(authorization.createAuthorizedGetRequest(token.value, "path").tag())
+        .isInstanceOf(TokenKey.class);
+  }
+}
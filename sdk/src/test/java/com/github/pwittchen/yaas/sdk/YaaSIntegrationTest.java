@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import com.github.pwittchen.yaas.sdk.testing.FakeYaaS;
+import com.github.pwittchen.yaas.sdk.testing.Route;
+import io.reactivex.Flowable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class YaaSIntegrationTest {
+
+  private FakeYaaS fake;
+  private OkHttpClient client;
+  private YaaSProject project;
+  private YaaSAuthorization authorization;
+  private YaaS yaas;
+
+  @Before
+  public void setUp() throws IOException {
+    fake = new FakeYaaS.Builder().withTokenLatency(50, TimeUnit.MILLISECONDS)
+        .withRoute(Route.get("org/service/v1/products")
+            .withResponse(200, "{\"id\":1,\"name\":\"product\"}")
+            .withLatency(5, 5, TimeUnit.MILLISECONDS))
+        .withRoute(Route.get("org/service/v1/throttled").withThrottling(1))
+        .withRoute(Route.get("org/service/v1/failing").withErrorRate(1))
+        .withRoute(Route.get("org/service/v1/limited").withThrottling(20))
+        .start();
+    client = new YaaSTransport.Builder().build();
+    final Endpoint endpoint = Endpoint.of(fake.url().toString());
+    project = new YaaSProject(endpoint, "org", "service", "v1", "clientId", "clientSecret");
+    authorization = new YaaSAuthorization(endpoint, client, new GsonConverter());
+    yaas = new YaaS(project, authorization);
+  }
+
+  @After
+  public void tearDown() {
+    fake.close();
+  }
+
+  @Test
+  public void shouldPerformConcurrentRequestsWithOneAccessToken() {
+    // when
+    final List<Integer> codes = Flowable.range(0, 500)
+        .flatMapSingle(i -> yaas.get("products/" + i).map(response -> {
+          try (Response closed = response) {
+            return closed.code();
+          }
+        }), false, 100)
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(codes).hasSize(500);
+    assertThat(new HashSet<>(codes)).containsExactly(200);
+    assertThat(fake.getTokenCalls()).isEqualTo(1);
+    assertThat(fake.getRequests()).isEqualTo(500);
+  }
+
+  @Test
+  public void shouldReplayRequestWhenAccessTokenIsRevoked() {
+    // given
+    yaas.get("products/1").blockingGet().close();
+    fake.revokeTokens();
+
+    // when
+    final Response response = yaas.get("products/1").blockingGet();
+    response.close();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(fake.getTokenCalls()).isEqualTo(2);
+    assertThat(fake.getRejectedRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReceiveThrottledResponse() {
+    // when
+    yaas.get("throttled").blockingGet().close();
+    final Response response = yaas.get("throttled").blockingGet();
+    response.close();
+
+    // then
+    assertThat(response.code()).isEqualTo(429);
+    assertThat(response.header("Retry-After")).isEqualTo("1");
+  }
+
+  @Test
+  public void shouldStopCallingFailingServiceWhenCircuitIsOpen() {
+    // given
+    final CircuitBreaker breaker = new CircuitBreaker.Builder().withWindow(10, 10).build();
+    final YaaS protectedYaaS = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withCircuitBreaker(breaker)
+        .withConcurrencyLimiter(new ConcurrencyLimiter())
+        .build();
+
+    // when
+    final List<Object> results = Flowable.range(0, 50)
+        .flatMapSingle(i -> protectedYaaS.get("failing").<Object>map(response -> {
+          try (Response closed = response) {
+            return closed.code();
+          }
+        }).onErrorReturn(throwable -> throwable.getClass()), false, 1)
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(results.subList(0, 10)).containsExactlyElementsIn(Collections.nCopies(10, 500));
+    assertThat(new HashSet<>(results.subList(10, 50)))
+        .containsExactly(RequestRejectedException.class);
+    assertThat(fake.getRequests()).isEqualTo(10);
+    assertThat(breaker.getState(ServiceKey.of(project))).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void shouldStayUnderQuotaWithRateLimiter() {
+    // given
+    final YaaS limitedYaaS = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withRateLimiter(new RateLimiter(10, 2))
+        .build();
+
+    // when
+    final List<Integer> codes = Flowable.range(0, 20)
+        .flatMapSingle(i -> limitedYaaS.get("limited").map(response -> {
+          try (Response closed = response) {
+            return closed.code();
+          }
+        }))
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(new HashSet<>(codes)).containsExactly(200);
+    assertThat(fake.getRejectedRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFailOverToAvailableEndpointOfGroup() {
+    // given
+    final Endpoint unavailable = Endpoint.of("http://127.0.0.1:1/");
+    final Endpoint available = Endpoint.of(fake.url().toString());
+    final EndpointGroup group =
+        new EndpointGroup.Builder().withEndpoint(unavailable).withEndpoint(available).build();
+    final YaaSProject groupProject =
+        new YaaSProject(group, "org", "service", "v1", "clientId", "clientSecret");
+    final YaaS groupYaaS =
+        new YaaS(groupProject, new YaaSAuthorization(group, client, new GsonConverter()));
+
+    // when
+    final List<Integer> codes = Flowable.range(0, 20)
+        .flatMapSingle(i -> groupYaaS.get("products/" + i).map(response -> {
+          try (Response closed = response) {
+            return closed.code();
+          }
+        }), false, 1)
+        .toList()
+        .blockingGet();
+
+    // then
+    assertThat(new HashSet<>(codes)).containsExactly(200);
+    assertThat(fake.getRequests()).isEqualTo(20);
+    assertThat(group.getErrorRate(unavailable)).isGreaterThan(0.0);
+    assertThat(group.getErrorRate(available)).isEqualTo(0.0);
+  }
+
+  @Test
+  public void shouldFetchAccessTokenWithGzipEnabledForAllBodies() {
+    // given
+    final OkHttpClient gzipClient = new YaaSTransport.Builder().withGzip(0).build();
+    final Endpoint endpoint = Endpoint.of(fake.url().toString());
+    final YaaS gzipYaaS =
+        new YaaS(project, new YaaSAuthorization(endpoint, gzipClient, new GsonConverter()));
+
+    // when
+    final Response response = gzipYaaS.get("products/1").blockingGet();
+    response.close();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(fake.getTokenCalls()).isEqualTo(1);
+  }
+}
@@ -15,10 +15,44 @@
  */
 package com.github.pwittchen.yaas.sdk;
 
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.junit.Test;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class YaaSTest {
 
@@ -71,4 +105,661 @@ public class YaaSTest {
 
     // then exception is thrown
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldReuseAccessTokenBetweenRequests() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    Response response = createResponse(200);
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    when(authorization.get(anyString(), anyString())).thenReturn(Single.just(response));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    client.get("first").blockingGet();
+    client.get("second").blockingGet();
+
+    // then
+    verify(authorization, times(1)).getToken("clientId", "clientSecret", null);
+    verify(authorization).get("token", "org/service/v1/first");
+    verify(authorization).get("token", "org/service/v1/second");
+  }
+
+  @Test
+  public void shouldRequestOneAccessTokenForThousandConcurrentRequests() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    AtomicInteger tokenCalls = new AtomicInteger();
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null)).thenReturn(Single.defer(() -> {
+      tokenCalls.incrementAndGet();
+      return Single.just(new AccessToken("token", expiresAt)).delay(100, TimeUnit.MILLISECONDS);
+    }));
+    when(authorization.get(anyString(), anyString())).thenReturn(Single.just(createResponse(200)));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    long responses = Flowable.range(0, 1000)
+        .flatMapSingle(i -> client.get("path").subscribeOn(Schedulers.io()), false, 1000)
+        .count()
+        .blockingGet();
+
+    // then
+    assertThat(responses).isEqualTo(1000);
+    assertThat(tokenCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldPrefetchAccessTokensOfManyProjects() {
+    // given
+    Authorization authorization = mock(Authorization.class);
+    TokenCache tokenCache = new InMemoryTokenCache();
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    List<YaaS> clients = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      String clientId = "clientId" + i;
+      when(authorization.getToken(clientId, "clientSecret", null))
+          .thenReturn(Single.just(new AccessToken("token" + i, expiresAt)));
+      clients.add(new YaaS(
+          new YaaSProject(Zone.EU, "org", "service" + i, "v1", clientId, "clientSecret"),
+          authorization, tokenCache));
+    }
+
+    // when
+    YaaS.prefetchAccessTokens(clients, 4).blockingAwait();
+
+    // then
+    for (int i = 0; i < 10; i++) {
+      verify(authorization).getToken("clientId" + i, "clientSecret", null);
+    }
+    assertThat(((InMemoryTokenCache) tokenCache).size()).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldReplayRequestWithNewAccessTokenWhenUnauthorized() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("revoked", expiresAt)))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    when(authorization.get("revoked", "org/service/v1/path"))
+        .thenReturn(Single.just(createResponse(401)));
+    when(authorization.get("token", "org/service/v1/path"))
+        .thenReturn(Single.just(createResponse(200)));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    Response response = client.get("path").blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    verify(authorization, times(2)).getToken("clientId", "clientSecret", null);
+  }
+
+  @Test
+  public void shouldReplayUnauthorizedRequestOnlyOnce() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    when(authorization.get(anyString(), anyString())).thenReturn(Single.just(createResponse(401)));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    Response response = client.get("path").blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(401);
+    verify(authorization, times(2)).get("token", "org/service/v1/path");
+  }
+
+  @Test
+  public void shouldNotReplayUnauthorizedRequestWithStreamingBody() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    RequestBody body = new RequestBody() {
+      @Override public MediaType contentType() {
+        return MediaType.parse("application/json");
+      }
+
+      @Override public void writeTo(BufferedSink sink) {
+      }
+    };
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    when(authorization.post(anyString(), anyString(), any(RequestBody.class)))
+        .thenReturn(Single.just(createResponse(401)));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    Response response = client.post("path", body).blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(401);
+    verify(authorization, times(1)).post("token", "org/service/v1/path", body);
+  }
+
+  @Test
+  public void shouldFailAndDisposeRequestWhenDeadlineIsExceeded() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    AtomicBoolean disposed = new AtomicBoolean();
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    when(authorization.get(anyString(), anyString()))
+        .thenReturn(Single.<Response>never().doOnDispose(() -> disposed.set(true)));
+    Client client = new YaaS(project, authorization).withDeadline(50, TimeUnit.MILLISECONDS);
+
+    // when
+    TestObserver<Response> observer = client.get("path").test();
+    observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+    // then
+    observer.assertError(TimeoutException.class);
+    assertThat(disposed.get()).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCreateClientWithNonPositiveDeadline() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+
+    // when
+    new YaaS(project).withDeadline(0, TimeUnit.SECONDS);
+
+    // then exception is thrown
+  }
+
+  @Test
+  public void shouldConvertResponseBodyToObjectOnDecodeScheduler() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get("token", "org/service/v1/products/1"))
+        .thenReturn(Single.just(createResponse(200, "{\"id\":1,\"name\":\"product\"}")));
+    AtomicReference<String> decodeThread = new AtomicReference<>();
+    Scheduler decodeScheduler = Schedulers.from(command -> new Thread(() -> {
+      decodeThread.set(Thread.currentThread().getName());
+      command.run();
+    }, "decode").start());
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withDecodeScheduler(decodeScheduler)
+        .build();
+
+    // when
+    Product product = client.<Product>get("products/1", Product.class).blockingGet();
+
+    // then
+    assertThat(product.id).isEqualTo(1);
+    assertThat(product.name).isEqualTo("product");
+    assertThat(decodeThread.get()).isEqualTo("decode");
+  }
+
+  @Test
+  public void shouldCloseResponseWhenDisposedBeforeDecoding() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    AtomicBoolean closed = new AtomicBoolean();
+    when(authorization.get("token", "org/service/v1/products/1"))
+        .thenReturn(Single.just(createTrackedResponse("{\"id\":1}", closed)));
+    TestScheduler decodeScheduler = new TestScheduler();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withDecodeScheduler(decodeScheduler)
+        .build();
+    TestObserver<Product> observer = client.<Product>get("products/1", Product.class).test();
+
+    // when
+    observer.dispose();
+    decodeScheduler.triggerActions();
+
+    // then
+    assertThat(closed.get()).isTrue();
+    observer.assertNoValues();
+  }
+
+  @Test
+  public void shouldEmitYaaSExceptionWithStatusAndBodyWhenResponseIsNotSuccessful() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get("token", "org/service/v1/products/1"))
+        .thenReturn(Single.just(createResponse(404, "{\"message\":\"not found\"}")));
+    Client client = new YaaS(project, authorization);
+
+    // when
+    TestObserver<Product> observer = client.<Product>get("products/1", Product.class).test();
+    observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+    // then
+    observer.assertError(throwable -> throwable instanceof YaaSException
+        && ((YaaSException) throwable).getCode() == 404
+        && ((YaaSException) throwable).getBody().equals("{\"message\":\"not found\"}"));
+  }
+
+  @Test
+  public void shouldReuseCachedObjectOfTypedGetRequest() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    AtomicInteger requests = new AtomicInteger();
+    when(authorization.get("token", "org/service/v1/products/1")).thenAnswer(invocation -> {
+      requests.incrementAndGet();
+      return Single.just(createResponse(200, "{\"id\":1,\"name\":\"product\"}"));
+    });
+    ResultCache resultCache = new ResultCache.Builder().withTtl(1, TimeUnit.MINUTES).build();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withResultCache(resultCache)
+        .build();
+
+    // when
+    client.<Product>get("products/1", Product.class).blockingGet();
+    Product product = client.<Product>get("products/1", Product.class).blockingGet();
+
+    // then
+    assertThat(product.name).isEqualTo("product");
+    assertThat(requests.get()).isEqualTo(1);
+    assertThat(resultCache.weight()).isEqualTo(25);
+    assertThat(resultCache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldShareOneCallBetweenConcurrentGetRequestsWithCoalescer() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    SingleSubject<Response> response = SingleSubject.create();
+    when(authorization.get("token", "org/service/v1/products/1")).thenReturn(response);
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withRequestCoalescer(new RequestCoalescer())
+        .build();
+
+    // when
+    Single<List<String>> bodies = Flowable.range(0, 100)
+        .flatMapSingle(i -> client.get("products/1").map(result -> result.body().string()))
+        .toList()
+        .cache();
+    bodies.subscribe();
+    response.onSuccess(createResponse(200, "{\"id\":1}"));
+
+    // then
+    assertThat(bodies.blockingGet()).hasSize(100);
+    verify(authorization, times(1)).get("token", "org/service/v1/products/1");
+  }
+
+  @Test
+  public void shouldApplyDeadlineOfEachCallerSharingCallWithCoalescer() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    SingleSubject<Response> response = SingleSubject.create();
+    when(authorization.get("token", "org/service/v1/products/1")).thenReturn(response);
+    RequestCoalescer coalescer = new RequestCoalescer();
+    YaaS client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withRequestCoalescer(coalescer)
+        .build();
+
+    // when
+    TestObserver<Response> patient = client.withDeadline(10, TimeUnit.SECONDS)
+        .get("products/1")
+        .test();
+    TestObserver<Response> impatient = client.withDeadline(50, TimeUnit.MILLISECONDS)
+        .get("products/1")
+        .test();
+    impatient.awaitTerminalEvent();
+    response.onSuccess(createResponse(200, "{\"id\":1}"));
+
+    // then
+    impatient.assertError(TimeoutException.class);
+    patient.awaitTerminalEvent();
+    patient.assertValueCount(1);
+    assertThat(coalescer.getCallCount()).isEqualTo(1);
+    assertThat(coalescer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldReportTokenAndRequestMetrics() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get(eq("token"), anyString()))
+        .thenAnswer(invocation -> Single.just(createResponse(200)));
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withMetricsListener(metrics)
+        .build();
+
+    // when
+    client.get("products/1").blockingGet();
+    client.get("products/2").blockingGet();
+
+    // then
+    assertThat(metrics.getTokenFetches()).isEqualTo(1);
+    assertThat(metrics.getTokenCacheHits()).isEqualTo(1);
+    assertThat(metrics.getLatencies().get("GET products/{id}").getCount()).isEqualTo(2);
+    assertThat(metrics.getStatusCodes()).containsEntry(200, 2L);
+    assertThat(metrics.getInFlightRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldNotReportRequestsWaitingForTokenFetchAsCacheHits() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = mock(Authorization.class);
+    SingleSubject<AccessToken> token = SingleSubject.create();
+    when(authorization.getToken("clientId", "clientSecret", null)).thenReturn(token);
+    when(authorization.get(eq("token"), anyString()))
+        .thenAnswer(invocation -> Single.just(createResponse(200)));
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withMetricsListener(metrics)
+        .build();
+
+    // when
+    TestObserver<Response> first = client.get("products/1").test();
+    TestObserver<Response> second = client.get("products/2").test();
+    token.onSuccess(new AccessToken("token", System.currentTimeMillis() + 3600 * 1000));
+    client.get("products/3").blockingGet();
+
+    // then
+    first.assertValueCount(1);
+    second.assertValueCount(1);
+    assertThat(metrics.getTokenFetches()).isEqualTo(1);
+    assertThat(metrics.getTokenWaits()).isEqualTo(1);
+    assertThat(metrics.getTokenCacheHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotTakeRateLimiterPermitsWhenCircuitIsOpen() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    AtomicInteger calls = new AtomicInteger();
+    when(authorization.get(eq("token"), anyString())).thenAnswer(invocation ->
+        Single.fromCallable(() -> createResponse(calls.incrementAndGet() == 1 ? 500 : 200)));
+    CircuitBreaker breaker = new CircuitBreaker.Builder().withWindow(1, 1).build();
+    RateLimiter rateLimiter = new RateLimiter.Builder().withRate(0.001)
+        .withBurst(2)
+        .withMode(RateLimiter.Mode.FAIL_FAST)
+        .build();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withCircuitBreaker(breaker)
+        .withRateLimiter(rateLimiter)
+        .build();
+    client.get("products/1").blockingGet();
+
+    // when
+    for (int i = 0; i < 3; i++) {
+      client.get("products/1").test().assertError(RequestRejectedException.class);
+    }
+    breaker.reset();
+    Response response = client.get("products/1").blockingGet();
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(rateLimiter.getRejectedRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRetryPostRequestOnlyWithIdempotencyKey() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    AtomicInteger calls = new AtomicInteger();
+    when(authorization.post(eq("token"), anyString(), any())).thenAnswer(invocation ->
+        Single.fromCallable(() -> createResponse(calls.incrementAndGet() <= 2 ? 503 : 200)));
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withRetryPolicy(new RetryPolicy.Builder()
+            .withBackoff(1, 10, TimeUnit.MILLISECONDS)
+            .withRetryBudget(new RetryBudget(1, 10))
+            .build())
+        .build();
+    RequestBody body = RequestBody.create(MediaType.parse("application/json"), "{}");
+
+    // when
+    Response withoutKey = client.post("orders", body).blockingGet();
+    Response withKey = client.post("orders", RetryPolicy.idempotent(body, "order-1")).blockingGet();
+
+    // then
+    assertThat(withoutKey.code()).isEqualTo(503);
+    assertThat(withKey.code()).isEqualTo(200);
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldHedgeSlowGetRequestWithSecondCall() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    SingleSubject<Response> slowCall = SingleSubject.create();
+    when(authorization.get(eq("token"), anyString()))
+        .thenReturn(Single.defer(() -> slowCall.hasObservers()
+            ? Single.just(createResponse(200)) : slowCall));
+    HedgingPolicy hedgingPolicy = new HedgingPolicy.Builder()
+        .withDelay(10, TimeUnit.MILLISECONDS)
+        .withMaxHedgeRatio(1)
+        .build();
+    Client client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withHedgingPolicy(hedgingPolicy)
+        .build();
+
+    // when
+    Response response = client.get("products/1").blockingGet();
+    boolean slowCallRunning = slowCall.hasObservers();
+    slowCall.onSuccess(createResponse(200));
+
+    // then
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(slowCallRunning).isTrue();
+    assertThat(slowCall.hasObservers()).isFalse();
+    assertThat(hedgingPolicy.getHedgedRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReadAllPagesOfCollection() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    List<String> requestedPaths = new CopyOnWriteArrayList<>();
+    when(authorization.get(eq("token"), anyString())).thenAnswer(invocation -> {
+      String path = invocation.getArgument(1);
+      requestedPaths.add(path);
+      if (path.contains("pageNumber=1&")) {
+        return Single.just(createResponse(200, "[{\"id\":1},{\"id\":2}]"));
+      } else if (path.contains("pageNumber=2&")) {
+        return Single.just(createResponse(200, "[{\"id\":3},{\"id\":4}]"));
+      } else if (path.contains("pageNumber=3&")) {
+        return Single.just(createResponse(200, "[{\"id\":5}]"));
+      }
+      return Single.just(createResponse(200, "[]"));
+    });
+    YaaS client = new YaaS(project, authorization);
+
+    // when
+    List<Product> products =
+        client.<Product>getAll("products?q=name:x", Product.class, 2, 1).toList().blockingGet();
+
+    // then
+    assertThat(products).hasSize(5);
+    assertThat(products.get(4).id).isEqualTo(5);
+    assertThat(requestedPaths).containsExactly(
+        "org/service/v1/products?q=name:x&pageNumber=1&pageSize=2",
+        "org/service/v1/products?q=name:x&pageNumber=2&pageSize=2",
+        "org/service/v1/products?q=name:x&pageNumber=3&pageSize=2");
+  }
+
+  @Test
+  public void shouldStopReadingPagesWhenLinkHeaderHasNoNextPage() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get(eq("token"), anyString())).thenReturn(Single.just(
+        createResponse(200, "[{\"id\":1},{\"id\":2}]").newBuilder()
+            .header("Link", "<https://api.eu.yaas.io/products?pageNumber=1>; rel=\"prev\"")
+            .build()));
+    YaaS client = new YaaS(project, authorization);
+
+    // when
+    List<Product> products =
+        client.<Product>getAll("products", Product.class, 2, 4).toList().blockingGet();
+
+    // then
+    assertThat(products).hasSize(2);
+  }
+
+  @Test
+  public void shouldIgnoreErrorOfPageRequestedAfterLastOne() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get(eq("token"), anyString())).thenAnswer(invocation -> {
+      final String url = invocation.getArgument(1);
+      if (url.contains("pageNumber=1&")) {
+        return Single.just(createResponse(200, "[{\"id\":1},{\"id\":2}]"));
+      } else if (url.contains("pageNumber=2&")) {
+        return Single.just(createResponse(200, "[{\"id\":3}]"))
+            .delay(50, TimeUnit.MILLISECONDS);
+      }
+      return Single.just(createResponse(404, "{\"message\":\"not found\"}"));
+    });
+    YaaS client = new YaaS(project, authorization);
+
+    // when
+    List<Product> products =
+        client.<Product>getAll("products", Product.class, 2, 4).toList().blockingGet();
+
+    // then
+    assertThat(products).hasSize(3);
+  }
+
+  @Test
+  public void shouldEmitErrorOfPageBeforeLastOne() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    when(authorization.get(eq("token"), anyString())).thenAnswer(invocation -> {
+      final String url = invocation.getArgument(1);
+      return Single.just(url.contains("pageNumber=2&")
+          ? createResponse(500, "{\"message\":\"error\"}")
+          : createResponse(200, "[{\"id\":1},{\"id\":2}]"));
+    });
+    YaaS client = new YaaS(project, authorization);
+
+    // when
+    TestSubscriber<Product> subscriber =
+        client.<Product>getAll("products", Product.class, 2, 4).test();
+    subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+    // then
+    subscriber.assertValueCount(2);
+    subscriber.assertError(YaaSException.class);
+  }
+
+  @Test
+  public void shouldNotRequestMorePagesThanPrefetchedWithoutDownstreamDemand() {
+    // given
+    YaaSProject project =
+        new YaaSProject(Zone.EU, "org", "service", "v1", "clientId", "clientSecret");
+    Authorization authorization = createAuthorization();
+    AtomicInteger pages = new AtomicInteger();
+    when(authorization.get(eq("token"), anyString())).thenAnswer(invocation -> {
+      pages.incrementAndGet();
+      return Single.just(createResponse(200, "[{\"id\":1},{\"id\":2}]"));
+    });
+    YaaS client = new YaaS.Builder().withProject(project)
+        .withAuthorization(authorization)
+        .withDecodeScheduler(Schedulers.trampoline())
+        .build();
+
+    // when
+    client.<Product>getAll("products", Product.class, 2, 3).test(1);
+
+    // then
+    assertThat(pages.get()).isAtMost(4);
+  }
+
+  private Authorization createAuthorization() {
+    Authorization authorization = mock(Authorization.class);
+    long expiresAt = System.currentTimeMillis() + 3600 * 1000;
+    when(authorization.getToken("clientId", "clientSecret", null))
+        .thenReturn(Single.just(new AccessToken("token", expiresAt)));
+    return authorization;
+  }
+
+  private Response createResponse(int code) {
+    return new Response.Builder().request(new Request.Builder().url(Zone.EU.getUrl()).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("test")
+        .build();
+  }
+
+  private Response createResponse(int code, String body) {
+    return createResponse(code).newBuilder()
+        .body(ResponseBody.create(MediaType.parse("application/json"), body))
+        .build();
+  }
+
+  private Response createTrackedResponse(String body, AtomicBoolean closed) {
+    Buffer buffer = new Buffer().writeUtf8(body);
+    BufferedSource source = Okio.buffer(new ForwardingSource(buffer) {
+      @Override public void close() throws IOException {
+        closed.set(true);
+        super.close();
+      }
+    });
+    return createResponse(200).newBuilder()
+        .body(ResponseBody.create(MediaType.parse("application/json"), buffer.size(), source))
+        .build();
+  }
+
+  private static class Product {
+    int id;
+    String name;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk;
+
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class YaaSTransportTest {
+
+  @Test
+  public void shouldShareOneClientBetweenAuthorizations() {
+    // when
+    final YaaSAuthorization first = new YaaSAuthorization(Zone.EU);
+    final YaaSAuthorization second = new YaaSAuthorization(Zone.US);
+
+    // then
+    assertThat(first.getClient()).isSameAs(YaaSTransport.shared());
+    assertThat(second.getClient()).isSameAs(YaaSTransport.shared());
+  }
+
+  @Test
+  public void shouldCreateClientWithServerDefaults() {
+    // when
+    final OkHttpClient client = YaaSTransport.shared();
+
+    // then
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(256);
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(128);
+    assertThat(client.protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+  }
+
+  @Test
+  public void shouldCreateHttp1ClientSharingPoolAndDispatcher() {
+    // when
+    final OkHttpClient client = YaaSTransport.sharedHttp1();
+
+    // then
+    assertThat(client.protocols()).containsExactly(Protocol.HTTP_1_1);
+    assertThat(client.connectionPool()).isSameAs(YaaSTransport.shared().connectionPool());
+    assertThat(client.dispatcher()).isSameAs(YaaSTransport.shared().dispatcher());
+  }
+
+  @Test
+  public void shouldCreateClientWithProvidedLimits() {
+    // when
+    final OkHttpClient client = new YaaSTransport.Builder().withMaxRequests(64)
+        .withMaxRequestsPerHost(32)
+        .withMaxIdleConnections(8)
+        .withKeepAlive(1, TimeUnit.MINUTES)
+        .withHttp2(false)
+        .withConnectTimeout(1, TimeUnit.SECONDS)
+        .withReadTimeout(2, TimeUnit.SECONDS)
+        .withWriteTimeout(3, TimeUnit.SECONDS)
+        .build();
+
+    // then
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(64);
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(32);
+    assertThat(client.protocols()).containsExactly(Protocol.HTTP_1_1);
+    assertThat(client.connectTimeoutMillis()).isEqualTo(1000);
+    assertThat(client.readTimeoutMillis()).isEqualTo(2000);
+    assertThat(client.writeTimeoutMillis()).isEqualTo(3000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCreateClientWithoutRequestsPerHost() {
+    // when
+    new YaaSTransport.Builder().withMaxRequestsPerHost(0);
+
+    // then exception is thrown
+  }
+}
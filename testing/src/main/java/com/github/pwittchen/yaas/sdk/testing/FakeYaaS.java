@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk.testing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+
+/**
+ * Local stand-in of the YaaS proxy running in the same process, which can be used to test the
+ * SDK over real HTTP without network access. It serves the OAuth token endpoint issuing fake
+ * Access Tokens and the configured routes of the services. Requests with missing or revoked token
+ * are rejected with 401 status and requests not matching any route with 404 status. Like the
+ * OAuth service, the token endpoint rejects compressed requests with 415 status.
+ *
+ * Requests of the YaaSAuthorization are sent to the fake by the interceptor returned by
+ * {@link #interceptor()}, which replaces scheme, host and port of each request.
+ *
+ * Server doesn't close idle connections, so connections pooled by the clients don't go stale
+ * between the requests. They're closed when the fake is closed.
+ *
+ * <pre>
+ * FakeYaaS fake = new FakeYaaS.Builder()
+ *     .withRoute(Route.get("org/service/v1/products").withResponse(200, "[]"))
+ *     .start();
+ *
+ * OkHttpClient client = new OkHttpClient.Builder().addInterceptor(fake.interceptor()).build();
+ * </pre>
+ */
+public final class FakeYaaS implements AutoCloseable {
+
+  public static final String TOKEN_PATH = "hybris/oauth2/v1/token";
+  private static final String TOKEN_PREFIX = "fake-token-";
+  private static final String TOKEN_RESPONSE_FORMAT = "{\"token_type\":\"Bearer\","
+      + "\"access_token\":\"%s\",\"expires_in\":%d,\"scope\":\"\"}";
+  private static final String HEADER_AUTHORIZATION = "Authorization";
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  private static final String HEADER_RETRY_AFTER = "Retry-After";
+  private static final String HEADER_RATE_LIMIT = "X-RateLimit-Limit";
+  private static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+  private static final String HEADER_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+  private static final String BEARER = "Bearer ";
+  private static final String APPLICATION_JSON = "application/json";
+  private static final String METHOD_POST = "POST";
+  private static final String HTTP = "http";
+  private static final int HTTP_OK = 200;
+  private static final int HTTP_UNAUTHORIZED = 401;
+  private static final int HTTP_NOT_FOUND = 404;
+  private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int HTTP_INTERNAL_ERROR = 500;
+  private static final long DEFAULT_TOKEN_EXPIRES_IN_SECONDS = 3600;
+  private static final long IDLE_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+  static {
+    // responses are written in two packets, which are delayed by Nagle's algorithm otherwise
+    setPropertyIfAbsent("sun.net.httpserver.nodelay", "true");
+    // server closes connections idle for 30 seconds or above 200 idle ones, while the clients
+    // keep them in the pool for 5 minutes, so requests sent over such stale connections fail
+    // with "unexpected end of stream"; idle connections are closed only by the clients
+    setPropertyIfAbsent("sun.net.httpserver.idleInterval", String.valueOf(IDLE_INTERVAL_SECONDS));
+    setPropertyIfAbsent("sun.net.httpserver.maxIdleConnections",
+        String.valueOf(Integer.MAX_VALUE));
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final List<Route> routes;
+  private final long tokenLatency;
+  private final long tokenExpiresIn;
+  private final AtomicInteger tokenGeneration = new AtomicInteger();
+  private final LongAdder tokenCalls = new LongAdder();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder rejectedRequests = new LongAdder();
+
+  private FakeYaaS(final Builder builder) throws IOException {
+    this.routes = new ArrayList<>(builder.routes);
+    this.tokenLatency = builder.tokenLatency;
+    this.tokenExpiresIn = builder.tokenExpiresIn;
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "fake-yaas");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        builder.backlog);
+    this.server.createContext("/", this::handle);
+    this.server.setExecutor(executor);
+    this.server.start();
+  }
+
+  /**
+   * @return URL of the fake, e.g. http://127.0.0.1:52113/
+   */
+  public HttpUrl url() {
+    return new HttpUrl.Builder().scheme(HTTP)
+        .host(server.getAddress().getHostString())
+        .port(server.getAddress().getPort())
+        .build();
+  }
+
+  /**
+   * @return interceptor sending requests to the fake instead of the original host
+   */
+  public Interceptor interceptor() {
+    final HttpUrl url = url();
+    return chain -> {
+      final Request request = chain.request();
+      final HttpUrl redirected = request.url().newBuilder()
+          .scheme(url.scheme())
+          .host(url.host())
+          .port(url.port())
+          .build();
+      return chain.proceed(request.newBuilder().url(redirected).build());
+    };
+  }
+
+  /**
+   * Rejects all the tokens issued so far with 401 status
+   */
+  public void revokeTokens() {
+    tokenGeneration.incrementAndGet();
+  }
+
+  /**
+   * @return number of requests to the token endpoint
+   */
+  public long getTokenCalls() {
+    return tokenCalls.sum();
+  }
+
+  /**
+   * @return number of requests to the services, including rejected ones
+   */
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /**
+   * @return number of requests to the services rejected because of the invalid token or throttling
+   */
+  public long getRejectedRequests() {
+    return rejectedRequests.sum();
+  }
+
+  @Override public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try (InputStream body = exchange.getRequestBody()) {
+      final byte[] buffer = new byte[8192];
+      while (body.read(buffer) != -1) {
+        // request body is discarded
+      }
+    }
+    final String path = exchange.getRequestURI().getRawPath().substring(1);
+    final String method = exchange.getRequestMethod();
+
+    if (TOKEN_PATH.equals(path) && METHOD_POST.equals(method)) {
+      if (exchange.getRequestHeaders().containsKey(HEADER_CONTENT_ENCODING)) {
+        respond(exchange, HTTP_UNSUPPORTED_MEDIA_TYPE, "{\"message\":\"unsupported encoding\"}");
+        return;
+      }
+      tokenCalls.increment();
+      sleep(tokenLatency);
+      final String token = TOKEN_PREFIX + tokenGeneration.get() + "-" + tokenCalls.sum();
+      respond(exchange, HTTP_OK, String.format(TOKEN_RESPONSE_FORMAT, token, tokenExpiresIn));
+      return;
+    }
+
+    requests.increment();
+    final String authorization = exchange.getRequestHeaders().getFirst(HEADER_AUTHORIZATION);
+    final String validToken = BEARER + TOKEN_PREFIX + tokenGeneration.get() + "-";
+    if (authorization == null || !authorization.startsWith(validToken)) {
+      rejectedRequests.increment();
+      respond(exchange, HTTP_UNAUTHORIZED, "{\"message\":\"invalid token\"}");
+      return;
+    }
+
+    for (Route route : routes) {
+      if (route.matches(method, path)) {
+        handle(exchange, route);
+        return;
+      }
+    }
+    respond(exchange, HTTP_NOT_FOUND, "{\"message\":\"not found\"}");
+  }
+
+  private void handle(final HttpExchange exchange, final Route route) throws IOException {
+    final boolean throttled = route.isThrottled();
+    if (route.isLimited()) {
+      exchange.getResponseHeaders().set(HEADER_RATE_LIMIT, String.valueOf(route.getLimit()));
+      exchange.getResponseHeaders()
+          .set(HEADER_RATE_LIMIT_REMAINING, String.valueOf(route.getRemaining()));
+      exchange.getResponseHeaders().set(HEADER_RATE_LIMIT_RESET, "1");
+    }
+    if (throttled) {
+      rejectedRequests.increment();
+      exchange.getResponseHeaders().set(HEADER_RETRY_AFTER, "1");
+      respond(exchange, HTTP_TOO_MANY_REQUESTS, "{\"message\":\"too many requests\"}");
+      return;
+    }
+    sleep(route.getDelay());
+    if (route.isFailed()) {
+      respond(exchange, HTTP_INTERNAL_ERROR, "{\"message\":\"internal error\"}");
+    } else {
+      respond(exchange, route.getCode(), route.getBody());
+    }
+  }
+
+  private static void respond(final HttpExchange exchange, final int code, final String body)
+      throws IOException {
+    final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set(HEADER_CONTENT_TYPE, APPLICATION_JSON);
+    exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  private static void setPropertyIfAbsent(final String key, final String value) {
+    if (System.getProperty(key) == null) {
+      System.setProperty(key, value);
+    }
+  }
+
+  private static void sleep(final long millis) {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public static class Builder {
+    private final List<Route> routes = new ArrayList<>();
+    private long tokenLatency;
+    private long tokenExpiresIn = DEFAULT_TOKEN_EXPIRES_IN_SECONDS;
+    private int backlog = 1024;
+
+    /**
+     * Adds route of the service, routes are matched in the order of adding
+     */
+    public Builder withRoute(final Route route) {
+      Objects.requireNonNull(route, "route == null");
+      this.routes.add(route);
+      return this;
+    }
+
+    /**
+     * Sets latency of the token endpoint (no latency by default)
+     */
+    public Builder withTokenLatency(final long latency, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.tokenLatency = unit.toMillis(latency);
+      return this;
+    }
+
+    /**
+     * Sets lifetime of the issued tokens (1 hour by default)
+     */
+    public Builder withTokenExpiresIn(final long expiresIn, final TimeUnit unit) {
+      Objects.requireNonNull(unit, "unit == null");
+      this.tokenExpiresIn = unit.toSeconds(expiresIn);
+      return this;
+    }
+
+    /**
+     * Sets maximal number of connections waiting for acceptance (1024 by default)
+     */
+    public Builder withBacklog(final int backlog) {
+      this.backlog = backlog;
+      return this;
+    }
+
+    /**
+     * Starts the server on the random port of the loopback interface
+     */
+    public FakeYaaS start() throws IOException {
+      return new FakeYaaS(this);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 Piotr Wittchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.pwittchen.yaas.sdk.testing;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Route of the FakeYaaS, which responds to the requests with the given method and the path
+ * starting with the given prefix, e.g. {@code Route.get("org/service/v1/products")}. Its response,
+ * latency, rate of errors and throttling can be configured before the server is started.
+ */
+public final class Route {
+
+  private static final String ANY_METHOD = "*";
+  private static final int HTTP_OK = 200;
+
+  final String method;
+  final String pathPrefix;
+  private int code = HTTP_OK;
+  private String body = "";
+  private long latency;
+  private long jitter;
+  private double errorRate;
+  private int maxRequestsPerSecond;
+  private final AtomicLong currentSecond = new AtomicLong();
+  private final AtomicInteger requestsInSecond = new AtomicInteger();
+
+  private Route(final String method, final String pathPrefix) {
+    Objects.requireNonNull(pathPrefix, "pathPrefix == null");
+    this.method = method;
+    this.pathPrefix = pathPrefix.startsWith("/") ? pathPrefix.substring(1) : pathPrefix;
+  }
+
+  public static Route get(final String pathPrefix) {
+    return new Route("GET", pathPrefix);
+  }
+
+  public static Route post(final String pathPrefix) {
+    return new Route("POST", pathPrefix);
+  }
+
+  public static Route put(final String pathPrefix) {
+    return new Route("PUT", pathPrefix);
+  }
+
+  public static Route delete(final String pathPrefix) {
+    return new Route("DELETE", pathPrefix);
+  }
+
+  /**
+   * Creates route responding to the requests with any method
+   */
+  public static Route any(final String pathPrefix) {
+    return new Route(ANY_METHOD, pathPrefix);
+  }
+
+  /**
+   * Sets response of the route (200 with empty body by default)
+   */
+  public Route withResponse(final int code, final String body) {
+    Objects.requireNonNull(body, "body == null");
+    this.code = code;
+    this.body = body;
+    return this;
+  }
+
+  /**
+   * Sets time after which the response is sent, extended by the random jitter from 0 up to the
+   * given value (no latency by default)
+   */
+  public Route withLatency(final long latency, final long jitter, final TimeUnit unit) {
+    Objects.requireNonNull(unit, "unit == null");
+    if (latency < 0 || jitter < 0) {
+      throw new IllegalArgumentException("latency < 0 || jitter < 0");
+    }
+    this.latency = unit.toMillis(latency);
+    this.jitter = unit.toMillis(jitter);
+    return this;
+  }
+
+  /**
+   * Sets fraction of the requests, which fail with 500 status (0 by default)
+   */
+  public Route withErrorRate(final double errorRate) {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("errorRate < 0 || errorRate > 1");
+    }
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /**
+   * Sets number of the requests accepted in each second, the others are rejected with 429 status
+   * and Retry-After header (unlimited by default). Responses of the route contain
+   * X-RateLimit-Limit, X-RateLimit-Remaining and X-RateLimit-Reset headers.
+   */
+  public Route withThrottling(final int maxRequestsPerSecond) {
+    if (maxRequestsPerSecond <= 0) {
+      throw new IllegalArgumentException("maxRequestsPerSecond <= 0");
+    }
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    return this;
+  }
+
+  boolean matches(final String requestMethod, final String path) {
+    return (ANY_METHOD.equals(method) || method.equals(requestMethod))
+        && path.startsWith(pathPrefix);
+  }
+
+  boolean isThrottled() {
+    if (maxRequestsPerSecond == 0) {
+      return false;
+    }
+    final long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    final long previousSecond = currentSecond.get();
+    if (previousSecond != second && currentSecond.compareAndSet(previousSecond, second)) {
+      requestsInSecond.set(0);
+    }
+    return requestsInSecond.incrementAndGet() > maxRequestsPerSecond;
+  }
+
+  boolean isLimited() {
+    return maxRequestsPerSecond > 0;
+  }
+
+  int getLimit() {
+    return maxRequestsPerSecond;
+  }
+
+  int getRemaining() {
+    return Math.max(maxRequestsPerSecond - requestsInSecond.get(), 0);
+  }
+
+  boolean isFailed() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  long getDelay() {
+    return jitter == 0 ? latency : latency + ThreadLocalRandom.current().nextLong(jitter + 1);
+  }
+
+  int getCode() {
+    return code;
+  }
+
+  String getBody() {
+    return body;
+  }
+
+  @Override public String toString() {
+    return method + " " + pathPrefix;
+  }
+}